@@ -3,8 +3,8 @@ package event;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AmongUsGame extends JFrame {
     private static final String GAME_TITLE = "Among Us Clone";
@@ -15,9 +15,12 @@ public class AmongUsGame extends JFrame {
     private ChatPanel chatPanel;
     private Player localPlayer;
     private List<Player> players;
-    private GameServer gameServer;
+    private NetworkManager networkManager;
     private TaskManager taskManager;
     private VotingSystem votingSystem;
+    private MovementPredictor movementPredictor;
+    private RemotePlayerInterpolator interpolator;
+    private GameLoop gameLoop;
 
     public AmongUsGame() {
         setupWindow();
@@ -37,16 +40,27 @@ public class AmongUsGame extends JFrame {
     }
 
     private void initializeGame() {
-        // Initialize game components
-        players = new ArrayList<>();
+        // Initialize game components; the network thread adds and removes
+        // players while the game loop draws them
+        players = new CopyOnWriteArrayList<>();
         localPlayer = new Player("Player" + System.currentTimeMillis() % 1000, false);
         players.add(localPlayer);
+        networkManager = new NetworkManager(localPlayer.getId(), false);
+
+        // Local movement is predicted every frame and sent as numbered inputs
+        movementPredictor = new MovementPredictor(localPlayer, localPlayer.getId(), input ->
+                networkManager.sendMessage(new NetworkMessage(NetworkMessage.Type.PLAYER_INPUT, input)));
 
         // Create game panels
         gamePanel = new GamePanel(localPlayer, players);
-        chatPanel = new ChatPanel();
+        gamePanel.setMovementPredictor(movementPredictor);
+        interpolator = new RemotePlayerInterpolator();
+        gamePanel.setInterpolator(interpolator);
+        chatPanel = new ChatPanel(networkManager, localPlayer);
         taskManager = new TaskManager();
+        taskManager.setNetworkManager(networkManager);
         votingSystem = new VotingSystem(players);
+        votingSystem.setNetworkManager(networkManager);
 
         // Layout setup
         JSplitPane splitPane = new JSplitPane(
@@ -95,34 +109,46 @@ public class AmongUsGame extends JFrame {
     }
 
     private void setupNetworking() {
-        gameServer = new GameServer();
-        gameServer.setMessageHandler(message -> {
-            handleNetworkMessage(message);
+        networkManager.addEventListener(new NetworkEventListener() {
+            @Override
+            public void onNetworkEvent(NetworkMessage message) {
+                handleNetworkMessage(message);
+            }
+
+            // Remote players are drawn far enough behind to ride out the
+            // jitter measured on every heartbeat
+            @Override
+            public void onLatencyUpdated(RttEstimator rtt) {
+                interpolator.adaptToLatency(rtt);
+            }
         });
 
         // Start server connection
-        gameServer.connect("localhost", 8080);
+        networkManager.connect("localhost");
     }
 
     private void handleNetworkMessage(NetworkMessage message) {
         switch (message.getType()) {
-            case PLAYER_JOIN:
+            case CONNECT:
                 handlePlayerJoin(message);
                 break;
-            case PLAYER_LEAVE:
+            case DISCONNECT:
                 handlePlayerLeave(message);
                 break;
-            case PLAYER_MOVE:
-                handlePlayerMove(message);
+            case PLAYER_UPDATE:
+                handlePlayerMove((PlayerUpdateData) message.getData(), message.getTimestamp());
                 break;
-            case CHAT_MESSAGE:
+            case SNAPSHOT:
+                handleSnapshot(message);
+                break;
+            case CHAT:
                 handleChatMessage(message);
                 break;
-            case VOTE_CAST:
+            case VOTE:
                 handleVoteCast(message);
                 break;
-            case TASK_COMPLETE:
-                handleTaskComplete(message);
+            case SABOTAGE:
+                handleSabotage(message);
                 break;
         }
     }
@@ -148,13 +174,11 @@ public class AmongUsGame extends JFrame {
             case KeyEvent.VK_SPACE:
                 handleInteraction();
                 break;
+            case KeyEvent.VK_F3:
+                gamePanel.toggleFrameStats();
+                break;
         }
-
-        // Send movement update to server
-        gameServer.sendMessage(new NetworkMessage(
-                NetworkMessage.Type.PLAYER_MOVE,
-                localPlayer.getPosition()
-        ));
+        // The game loop turns the held keys into a PLAYER_INPUT every step
     }
 
     private void handleKeyRelease(KeyEvent e) {
@@ -179,33 +203,76 @@ public class AmongUsGame extends JFrame {
     }
 
     private void handleInteraction() {
-        // Check for nearby tasks or players
-        if (taskManager.hasNearbyTask(localPlayer.getPosition())) {
-            taskManager.startTask();
-        } else if (votingSystem.isVotingTime() && votingSystem.canVote()) {
-            votingSystem.showVotingDialog();
+        // Check for nearby tasks; the voting dialog opens by itself with a meeting
+        if (votingSystem.isVotingTime()) return;
+
+        for (Task task : taskManager.getPlayerTasks()) {
+            if (!task.isCompleted() && localPlayer.getPosition().distance(task.getPosition()) < Player.INTERACTION_RANGE) {
+                taskManager.startTask(task);
+                return;
+            }
         }
     }
 
     private void handlePlayerJoin(NetworkMessage message) {
-        Player newPlayer = (Player) message.getData();
-        players.add(newPlayer);
+        ConnectionData data = (ConnectionData) message.getData();
+        // Our own CONNECT answers only carry codecs and indices
+        if (data.playerId == null || data.playerId.equals(localPlayer.getId()) || data.playerName == null) return;
+
+        Player newPlayer = findPlayer(data.playerId);
+        if (newPlayer == null) {
+            players.add(new Player(data.playerId, data.playerName, false));
+        }
         gamePanel.repaint();
     }
 
+    private Player findPlayer(String playerId) {
+        for (Player player : players) {
+            if (player.getId().equals(playerId)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
     private void handlePlayerLeave(NetworkMessage message) {
         String playerId = (String) message.getData();
         players.removeIf(p -> p.getId().equals(playerId));
+        interpolator.remove(playerId);
         gamePanel.repaint();
     }
 
-    private void handlePlayerMove(NetworkMessage message) {
-        PlayerPosition pos = (PlayerPosition) message.getData();
-        players.stream()
-                .filter(p -> p.getId().equals(pos.getPlayerId()))
-                .findFirst()
-                .ifPresent(p -> p.setPosition(pos.getX(), pos.getY()));
-        gamePanel.repaint();
+    // Positions from snapshots and direct updates alike, stamped with the server's send time
+    private void handlePlayerMove(PlayerUpdateData pos, long serverTime) {
+
+        // Our own authoritative position only corrects the prediction
+        if (localPlayer.getId().equals(pos.playerId)) {
+            movementPredictor.onServerState(pos);
+            return;
+        }
+
+        // Everyone else is buffered and drawn a little behind the server;
+        // players who were here before us are first seen in a snapshot
+        if (findPlayer(pos.playerId) == null) {
+            players.add(new Player(pos.playerId, "Player", false));
+        }
+        if (pos.position != null) {
+            interpolator.onPositionUpdate(pos.playerId, serverTime,
+                    pos.position.x, pos.position.y, pos.isMoving);
+        }
+    }
+
+    private void handleSnapshot(NetworkMessage message) {
+        SnapshotData snapshot = (SnapshotData) message.getData();
+        if (snapshot.removed != null) {
+            for (String playerId : snapshot.removed) {
+                players.removeIf(p -> p.getId().equals(playerId));
+                interpolator.remove(playerId);
+            }
+        }
+        for (PlayerUpdateData update : snapshot.updates) {
+            handlePlayerMove(update, message.getTimestamp());
+        }
     }
 
     private void handleChatMessage(NetworkMessage message) {
@@ -217,45 +284,53 @@ public class AmongUsGame extends JFrame {
         votingSystem.registerVote(voteData);
     }
 
-    private void handleTaskComplete(NetworkMessage message) {
-        TaskData taskData = (TaskData) message.getData();
-        taskManager.completeTask(taskData.getTaskId());
+    private void handleSabotage(NetworkMessage message) {
+        SabotageData sabotage = (SabotageData) message.getData();
+        if (sabotage.type == SabotageData.SabotageType.LIGHTS) {
+            gamePanel.setLightsSabotaged(!sabotage.isFixed);
+        }
     }
 
-    // Game loop
-    public void startGameLoop() {
-        Thread gameLoop = new Thread(() -> {
-            while (true) {
-                updateGame();
-                try {
-                    Thread.sleep(16); // Approximately 60 FPS
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+    // Game loop: fixed 60 Hz simulation steps, frames drawn by the loop itself
+    // at targetFps (-1 = the display's refresh rate, 0 = unpaced)
+    public void startGameLoop(int targetFps) {
+        if (targetFps < 0) {
+            targetFps = displayRefreshRate();
+        }
+        gamePanel.enableActiveRendering();
+        gameLoop = new GameLoop(this::updateGame, gamePanel::renderFrame, targetFps);
+        gamePanel.setFrameStats(gameLoop.getStats());
         gameLoop.start();
     }
 
-    private void updateGame() {
-        // Update player positions
-        localPlayer.update();
-
-        // Check for task completion
-        taskManager.checkTaskProgress();
-
-        // Update voting system
-        votingSystem.update();
+    private int displayRefreshRate() {
+        int rate = getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : rate;
+    }
 
-        // Repaint game panel
-        gamePanel.repaint();
+    // One fixed simulation step
+    private void updateGame() {
+        // Predict local movement and send this frame's input
+        movementPredictor.tick();
+        localPlayer.updateAnimation();
+        gamePanel.updateEffects();
     }
 
+    // --fps=N paces frames at N per second, --fps=0 draws unpaced; default is
+    // the display's rate
     public static void main(String[] args) {
+        int fps = -1;
+        for (String arg : args) {
+            if (arg.startsWith("--fps=")) {
+                fps = Integer.parseInt(arg.substring("--fps=".length()));
+            }
+        }
+
+        int targetFps = fps;
         SwingUtilities.invokeLater(() -> {
             AmongUsGame game = new AmongUsGame();
             game.setVisible(true);
-            game.startGameLoop();
+            game.startGameLoop(targetFps);
         });
     }
 }
@@ -1,6 +1,7 @@
 package event;
 
 import java.awt.*;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 
 public class Animation {
@@ -60,6 +61,16 @@ public class Animation {
         }
     }
 
+    // Whether the current frame overlaps view, a world-space rectangle
+    public boolean isVisibleIn(Rectangle2D view) {
+        if (currentFrame >= frames.length || frames[currentFrame] == null) return false;
+
+        BufferedImage currentImage = frames[currentFrame];
+        int width = currentImage.getWidth();
+        int height = currentImage.getHeight();
+        return view.intersects(x - width / 2, y - height / 2, width, height);
+    }
+
     public void setPosition(double x, double y) {
         this.x = x;
         this.y = y;
@@ -0,0 +1,546 @@
+package event;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+// Compact binary frames: varint length prefix, a type byte, a varint timestamp
+// and a hand-written layout per payload class. Positions are quantized to
+// 1/8 of a world unit and player ids are sent as interned indices.
+public class BinaryMessageCodec implements MessageCodec {
+    public static final String NAME = "binary";
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+    private static final double POSITION_SCALE = 8.0;
+
+    // Payload kinds, one per data class
+    private static final int KIND_NULL = 0;
+    private static final int KIND_CONNECTION = 1;
+    private static final int KIND_PLAYER_UPDATE = 2;
+    private static final int KIND_CHAT = 3;
+    private static final int KIND_EMERGENCY = 4;
+    private static final int KIND_VOTE = 5;
+    private static final int KIND_TASK = 6;
+    private static final int KIND_KILL = 7;
+    private static final int KIND_SABOTAGE = 8;
+    private static final int KIND_PLAYER_ID = 9;
+    private static final int KIND_STRING = 10;
+    private static final int KIND_SNAPSHOT = 11;
+    private static final int KIND_LONG = 12;
+    private static final int KIND_INPUT = 13;
+    private static final int KIND_JSON = 15; // registry JSON for cold payloads, e.g. full GameState
+
+    private static final NetworkMessage.Type[] TYPES = NetworkMessage.Type.values();
+
+    private final PlayerIndexTable indexTable;
+    private final Gson gson;
+
+    public BinaryMessageCodec(PlayerIndexTable indexTable) {
+        this.indexTable = indexTable;
+        this.gson = new Gson();
+    }
+
+    @Override
+    public int id() {
+        return BINARY_ID;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(NetworkMessage message) {
+        WireWriter payload = new WireWriter(32);
+        payload.writeByte(message.getType().ordinal());
+        payload.writeVarLong(message.getTimestamp());
+        writeData(payload, message.getType(), message.getData());
+
+        WireWriter frame = new WireWriter(payload.size() + 5);
+        frame.writeVarInt(payload.size());
+        frame.writeBytes(payload.toByteArray());
+        return frame.toByteArray();
+    }
+
+    @Override
+    public NetworkMessage decode(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        int length = WireReader.peekVarInt(buffer, MAX_FRAME_SIZE);
+        if (length < 0) {
+            return null;
+        }
+        if (buffer.remaining() < length) {
+            buffer.position(start);
+            return null;
+        }
+
+        ByteBuffer payload = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return decodePayload(new WireReader(payload));
+    }
+
+    @Override
+    public NetworkMessage read(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                if (shift == 0) return null;
+                throw new IOException("Truncated length prefix");
+            }
+            if (shift >= 35) {
+                throw new IOException("Malformed length prefix");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Frame too large");
+        }
+
+        byte[] payload = in.readNBytes(length);
+        if (payload.length < length) {
+            throw new IOException("Truncated frame");
+        }
+        return decodePayload(new WireReader(ByteBuffer.wrap(payload)));
+    }
+
+    private NetworkMessage decodePayload(WireReader in) throws IOException {
+        int typeIndex = in.readByte();
+        if (typeIndex >= TYPES.length) {
+            throw new IOException("Unknown message type " + typeIndex);
+        }
+        long timestamp = in.readVarLong();
+        Object data = readData(in, TYPES[typeIndex]);
+        return new NetworkMessage(TYPES[typeIndex], data, timestamp);
+    }
+
+    private void writeData(WireWriter out, NetworkMessage.Type type, Object data) {
+        switch (data) {
+            case null -> out.writeByte(KIND_NULL);
+            case PlayerUpdateData update -> {
+                out.writeByte(KIND_PLAYER_UPDATE);
+                writePlayerUpdate(out, update);
+            }
+            case SnapshotData snapshot -> {
+                out.writeByte(KIND_SNAPSHOT);
+                writeSnapshot(out, snapshot);
+            }
+            case InputData input -> {
+                out.writeByte(KIND_INPUT);
+                writePlayerId(out, input.playerId);
+                out.writeVarLong(input.sequence);
+                out.writeVarInt(input.buttons.length);
+                out.writeBytes(input.buttons);
+            }
+            case ConnectionData connection -> {
+                out.writeByte(KIND_CONNECTION);
+                // Always a literal: this is how receivers learn the index
+                out.writeString(connection.playerId);
+                out.writeBoolean(connection.isHost);
+                out.writeString(connection.playerName);
+                writeColor(out, connection.playerColor);
+                out.writeVarInt(connection.playerIndex != null ? connection.playerIndex + 1 : 0);
+                out.writeString(connection.codec);
+                writeStrings(out, connection.codecs);
+                writeStrings(out, connection.knownPlayers);
+                out.writeString(connection.lobbyId);
+                out.writeVarInt(connection.datagramPort != null ? connection.datagramPort + 1 : 0);
+                if (connection.datagramPort != null) {
+                    out.writeZigZag(connection.datagramToken);
+                }
+                out.writeString(connection.sessionToken);
+                out.writeVarLong(connection.resumeTick + 1);
+                out.writeBoolean(connection.resumed);
+            }
+            case ChatMessage chat -> {
+                out.writeByte(KIND_CHAT);
+                writePlayerId(out, chat.senderId);
+                out.writeString(chat.message);
+                out.writeByte(chat.type != null ? chat.type.ordinal() + 1 : 0);
+                out.writeVarLong(chat.timestamp);
+            }
+            case EmergencyData emergency -> {
+                out.writeByte(KIND_EMERGENCY);
+                writePlayerId(out, emergency.reporterId);
+                out.writeByte(emergency.type != null ? emergency.type.ordinal() + 1 : 0);
+                writePosition(out, emergency.location);
+                writePlayerId(out, emergency.deadBodyId);
+                out.writeVarLong(emergency.timestamp);
+            }
+            case VoteData vote -> {
+                out.writeByte(KIND_VOTE);
+                writeVote(out, vote);
+            }
+            case TaskData task -> {
+                out.writeByte(KIND_TASK);
+                writeTask(out, task);
+            }
+            case KillData kill -> {
+                out.writeByte(KIND_KILL);
+                writePlayerId(out, kill.killerId);
+                writePlayerId(out, kill.victimId);
+                writePosition(out, kill.location);
+                out.writeString(kill.room);
+                out.writeVarLong(kill.timestamp);
+            }
+            case SabotageData sabotage -> {
+                out.writeByte(KIND_SABOTAGE);
+                writeSabotage(out, sabotage);
+            }
+            case Long value -> {
+                out.writeByte(KIND_LONG);
+                out.writeZigZag(value);
+            }
+            case String text when type == NetworkMessage.Type.DISCONNECT -> {
+                out.writeByte(KIND_PLAYER_ID);
+                writePlayerId(out, text);
+            }
+            case String text -> {
+                out.writeByte(KIND_STRING);
+                out.writeString(text);
+            }
+            default -> {
+                out.writeByte(KIND_JSON);
+                out.writeString(PayloadRegistry.toJson(type, data));
+            }
+        }
+    }
+
+    private Object readData(WireReader in, NetworkMessage.Type type) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+            case KIND_NULL:
+                return null;
+            case KIND_PLAYER_UPDATE:
+                return readPlayerUpdate(in);
+            case KIND_SNAPSHOT:
+                return readSnapshot(in);
+            case KIND_INPUT: {
+                String playerId = readPlayerId(in);
+                long sequence = in.readVarLong();
+                return new InputData(playerId, sequence, in.readBytes(in.readVarInt()));
+            }
+            case KIND_LONG:
+                return in.readZigZag();
+            case KIND_CONNECTION: {
+                ConnectionData connection = new ConnectionData(in.readString(), in.readBoolean());
+                connection.playerName = in.readString();
+                connection.playerColor = readColor(in);
+                int index = in.readVarInt();
+                connection.playerIndex = index > 0 ? index - 1 : null;
+                connection.codec = in.readString();
+                connection.codecs = readStrings(in);
+                connection.knownPlayers = readStrings(in);
+                connection.lobbyId = in.readString();
+                int datagramPort = in.readVarInt();
+                if (datagramPort > 0) {
+                    connection.datagramPort = datagramPort - 1;
+                    connection.datagramToken = in.readZigZag();
+                }
+                connection.sessionToken = in.readString();
+                connection.resumeTick = in.readVarLong() - 1;
+                connection.resumed = in.readBoolean();
+                return connection;
+            }
+            case KIND_CHAT: {
+                String senderId = readPlayerId(in);
+                String text = in.readString();
+                ChatMessage.ChatType chatType = readEnum(in, ChatMessage.ChatType.values());
+                ChatMessage chat = new ChatMessage(senderId, text, chatType);
+                chat.timestamp = in.readVarLong();
+                return chat;
+            }
+            case KIND_EMERGENCY: {
+                String reporterId = readPlayerId(in);
+                EmergencyData emergency = new EmergencyData(
+                        reporterId,
+                        readEnum(in, EmergencyData.EmergencyType.values())
+                );
+                emergency.location = readPosition(in);
+                emergency.deadBodyId = readPlayerId(in);
+                emergency.timestamp = in.readVarLong();
+                return emergency;
+            }
+            case KIND_VOTE:
+                return readVote(in);
+            case KIND_TASK:
+                return readTask(in);
+            case KIND_KILL: {
+                String killerId = readPlayerId(in);
+                String victimId = readPlayerId(in);
+                KillData kill = new KillData(killerId, victimId, readPosition(in));
+                kill.room = in.readString();
+                kill.timestamp = in.readVarLong();
+                return kill;
+            }
+            case KIND_SABOTAGE:
+                return readSabotage(in);
+            case KIND_PLAYER_ID:
+                return readPlayerId(in);
+            case KIND_STRING:
+                return in.readString();
+            case KIND_JSON:
+                return PayloadRegistry.fromJson(type, in.readString());
+            default:
+                throw new IOException("Unknown payload kind " + kind);
+        }
+    }
+
+    private void writePlayerUpdate(WireWriter out, PlayerUpdateData update) {
+        writePlayerId(out, update.playerId);
+        writePosition(out, update.position);
+        int flags = (update.isMoving ? 1 : 0)
+                | (update.isInVent ? 2 : 0)
+                | (update.isDead ? 4 : 0)
+                | (update.lastInput != 0 ? 8 : 0);
+        out.writeByte(flags);
+        out.writeString(update.currentRoom);
+        if (update.lastInput != 0) {
+            out.writeVarLong(update.lastInput);
+        }
+    }
+
+    private PlayerUpdateData readPlayerUpdate(WireReader in) throws IOException {
+        PlayerUpdateData update = new PlayerUpdateData(readPlayerId(in), readPosition(in));
+        int flags = in.readByte();
+        update.isMoving = (flags & 1) != 0;
+        update.isInVent = (flags & 2) != 0;
+        update.isDead = (flags & 4) != 0;
+        update.currentRoom = in.readString();
+        if ((flags & 8) != 0) {
+            update.lastInput = in.readVarLong();
+        }
+        return update;
+    }
+
+    // tick, base as an offset back from tick (0 = full), then a bit per optional section
+    private void writeSnapshot(WireWriter out, SnapshotData snapshot) {
+        out.writeVarLong(snapshot.tick);
+        out.writeVarLong(snapshot.baseTick >= 0 ? snapshot.tick - snapshot.baseTick : 0);
+        out.writeVarInt(snapshot.updates.size());
+        for (PlayerUpdateData update : snapshot.updates) {
+            writePlayerUpdate(out, update);
+        }
+
+        int sections = (snapshot.removed != null ? 1 : 0)
+                | (snapshot.phase != null ? 2 : 0)
+                | (snapshot.completedTasks != null ? 4 : 0)
+                | (snapshot.votes != null ? 8 : 0)
+                | (snapshot.sabotage != null ? 16 : 0);
+        out.writeByte(sections);
+        if (snapshot.removed != null) {
+            out.writeVarInt(snapshot.removed.size());
+            for (String playerId : snapshot.removed) {
+                writePlayerId(out, playerId);
+            }
+        }
+        if (snapshot.phase != null) {
+            out.writeByte(snapshot.phase.ordinal() + 1);
+        }
+        if (snapshot.completedTasks != null) {
+            out.writeVarInt(snapshot.completedTasks.size());
+            for (TaskData task : snapshot.completedTasks) {
+                writeTask(out, task);
+            }
+        }
+        if (snapshot.votes != null) {
+            out.writeVarInt(snapshot.votes.size());
+            for (VoteData vote : snapshot.votes) {
+                writeVote(out, vote);
+            }
+        }
+        if (snapshot.sabotage != null) {
+            writeSabotage(out, snapshot.sabotage);
+        }
+    }
+
+    private SnapshotData readSnapshot(WireReader in) throws IOException {
+        long tick = in.readVarLong();
+        long baseOffset = in.readVarLong();
+        int count = in.readVarInt();
+        List<PlayerUpdateData> updates = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++) {
+            updates.add(readPlayerUpdate(in));
+        }
+        SnapshotData snapshot = new SnapshotData(tick, updates);
+        snapshot.baseTick = baseOffset > 0 ? tick - baseOffset : -1;
+
+        int sections = in.readByte();
+        if ((sections & 1) != 0) {
+            int removed = in.readVarInt();
+            snapshot.removed = new ArrayList<>(Math.min(removed, 64));
+            for (int i = 0; i < removed; i++) {
+                snapshot.removed.add(readPlayerId(in));
+            }
+        }
+        if ((sections & 2) != 0) {
+            snapshot.phase = readEnum(in, GameState.GamePhase.values());
+        }
+        if ((sections & 4) != 0) {
+            int tasks = in.readVarInt();
+            snapshot.completedTasks = new ArrayList<>(Math.min(tasks, 64));
+            for (int i = 0; i < tasks; i++) {
+                snapshot.completedTasks.add(readTask(in));
+            }
+        }
+        if ((sections & 8) != 0) {
+            int votes = in.readVarInt();
+            snapshot.votes = new ArrayList<>(Math.min(votes, 64));
+            for (int i = 0; i < votes; i++) {
+                snapshot.votes.add(readVote(in));
+            }
+        }
+        if ((sections & 16) != 0) {
+            snapshot.sabotage = readSabotage(in);
+        }
+        return snapshot;
+    }
+
+    private void writeVote(WireWriter out, VoteData vote) {
+        writePlayerId(out, vote.voterId);
+        writePlayerId(out, vote.votedId);
+        out.writeBoolean(vote.isSkip);
+        out.writeVarLong(vote.timestamp);
+    }
+
+    private VoteData readVote(WireReader in) throws IOException {
+        String voterId = readPlayerId(in);
+        String votedId = readPlayerId(in);
+        VoteData vote = new VoteData(voterId, votedId != null ? votedId : "skip");
+        vote.votedId = votedId;
+        vote.isSkip = in.readBoolean();
+        vote.timestamp = in.readVarLong();
+        return vote;
+    }
+
+    private void writeTask(WireWriter out, TaskData task) {
+        writePlayerId(out, task.playerId);
+        out.writeString(task.taskId);
+        out.writeByte(task.taskType != null ? task.taskType.ordinal() + 1 : 0);
+        out.writeBoolean(task.isComplete);
+    }
+
+    private TaskData readTask(WireReader in) throws IOException {
+        String playerId = readPlayerId(in);
+        String taskId = in.readString();
+        TaskData task = new TaskData(playerId, taskId, readEnum(in, TaskData.TaskType.values()));
+        task.isComplete = in.readBoolean();
+        return task;
+    }
+
+    private void writeSabotage(WireWriter out, SabotageData sabotage) {
+        out.writeByte(sabotage.type != null ? sabotage.type.ordinal() + 1 : 0);
+        out.writeVarLong(sabotage.duration);
+        out.writeBoolean(sabotage.isFixed);
+        out.writeString(sabotage.parameters != null ? gson.toJson(sabotage.parameters) : null);
+    }
+
+    private SabotageData readSabotage(WireReader in) throws IOException {
+        SabotageData.SabotageType sabotageType = readEnum(in, SabotageData.SabotageType.values());
+        SabotageData sabotage = new SabotageData(sabotageType, in.readVarLong());
+        sabotage.isFixed = in.readBoolean();
+        String parameters = in.readString();
+        if (parameters != null) {
+            sabotage.parameters = fromJson(parameters, new TypeToken<Map<String, Object>>() {}.getType());
+        }
+        return sabotage;
+    }
+
+    // 0 = null, 1 = literal string follows, n >= 2 = published index n - 2
+    private void writePlayerId(WireWriter out, String playerId) {
+        if (playerId == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        int index = indexTable.publishedIndexOf(playerId);
+        if (index >= 0) {
+            out.writeVarInt(index + 2);
+        } else {
+            out.writeVarInt(1);
+            out.writeString(playerId);
+        }
+    }
+
+    private String readPlayerId(WireReader in) throws IOException {
+        int ref = in.readVarInt();
+        if (ref == 0) return null;
+        if (ref == 1) return in.readString();
+
+        String playerId = indexTable.idAt(ref - 2);
+        if (playerId == null) {
+            throw new IOException("Unknown player index " + (ref - 2));
+        }
+        return playerId;
+    }
+
+    private void writePosition(WireWriter out, Point2D.Double position) {
+        out.writeBoolean(position != null);
+        if (position != null) {
+            out.writeZigZag(Math.round(position.x * POSITION_SCALE));
+            out.writeZigZag(Math.round(position.y * POSITION_SCALE));
+        }
+    }
+
+    private Point2D.Double readPosition(WireReader in) throws IOException {
+        if (!in.readBoolean()) return null;
+        double x = in.readZigZag() / POSITION_SCALE;
+        double y = in.readZigZag() / POSITION_SCALE;
+        return new Point2D.Double(x, y);
+    }
+
+    private void writeColor(WireWriter out, Color color) {
+        out.writeBoolean(color != null);
+        if (color != null) {
+            out.writeVarInt(color.getRGB());
+        }
+    }
+
+    private Color readColor(WireReader in) throws IOException {
+        return in.readBoolean() ? new Color(in.readVarInt(), true) : null;
+    }
+
+    private void writeStrings(WireWriter out, String[] values) {
+        out.writeVarInt(values != null ? values.length + 1 : 0);
+        if (values != null) {
+            for (String value : values) {
+                out.writeString(value);
+            }
+        }
+    }
+
+    private String[] readStrings(WireReader in) throws IOException {
+        int count = in.readVarInt();
+        if (count == 0) return null;
+        String[] values = new String[count - 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readString();
+        }
+        return values;
+    }
+
+    private <E extends Enum<E>> E readEnum(WireReader in, E[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal == 0) return null;
+        if (ordinal > values.length) {
+            throw new IOException("Enum ordinal out of range: " + ordinal);
+        }
+        return values[ordinal - 1];
+    }
+
+    private <T> T fromJson(String json, java.lang.reflect.Type type) throws IOException {
+        try {
+            return gson.fromJson(json, type);
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed payload: " + e.getMessage(), e);
+        }
+    }
+}
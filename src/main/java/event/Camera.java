@@ -3,10 +3,14 @@ package event;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 
 public class Camera {
+    private static final double MIN_ZOOM = 0.25;
+    private static final double MAX_ZOOM = 4.0;
+
     private Player target;
-    private double x, y;
+    private double x, y; // world point at the center of the window
     private double zoom;
 
     public Camera(Player target) {
@@ -16,18 +20,45 @@ public class Camera {
 
     public void apply(Graphics2D g2d) {
         // Center camera on target
-        x = -target.getX() + GamePanel.WINDOW_WIDTH / 2;
-        y = -target.getY() + GamePanel.WINDOW_HEIGHT / 2;
+        apply(g2d, target.getX(), target.getY());
+    }
+
+    // Centers on a given world point, e.g. the target's interpolated position
+    public void apply(Graphics2D g2d, double focusX, double focusY) {
+        x = focusX;
+        y = focusY;
 
-        // Apply transform
-        g2d.translate(x, y);
+        // Apply transform: zoom around the window center
+        g2d.translate(GamePanel.WINDOW_WIDTH / 2, GamePanel.WINDOW_HEIGHT / 2);
         g2d.scale(zoom, zoom);
+        g2d.translate(-x, -y);
     }
 
     public Point2D.Double worldToScreen(Point2D.Double worldPoint) {
         return new Point2D.Double(
-                worldPoint.x + x,
-                worldPoint.y + y
+                (worldPoint.x - x) * zoom + GamePanel.WINDOW_WIDTH / 2,
+                (worldPoint.y - y) * zoom + GamePanel.WINDOW_HEIGHT / 2
+        );
+    }
+
+    // The world area a view of the given size shows with the last applied
+    // transform, grown by margin world units on every side
+    public void getViewBounds(int viewWidth, int viewHeight, double margin, Rectangle2D.Double out) {
+        double left = x - GamePanel.WINDOW_WIDTH / 2 / zoom;
+        double top = y - GamePanel.WINDOW_HEIGHT / 2 / zoom;
+        out.setRect(
+                left - margin,
+                top - margin,
+                viewWidth / zoom + margin * 2,
+                viewHeight / zoom + margin * 2
         );
     }
-}
\ No newline at end of file
+
+    public void setZoom(double zoom) {
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+}
@@ -2,21 +2,76 @@ package event;
 
 import java.net.*;
 import java.io.*;
-import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ClientHandler implements Runnable {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
     private Socket clientSocket;
+    private NioTransport.Connection connection;
     private NetworkManager networkManager;
-    private PrintWriter out;
-    private BufferedReader in;
+    private GameServer gameServer;
+    private MessageCodecs codecs;
+    private ExecutorStrategy executorStrategy;
+    private final OutboundQueue outbound;
+    private final ServerConfig config;
+    private volatile long flushCount;
+    private volatile MessageCodec codec;
+    private OutputStream out;
+    private InputStream in;
+    private final ReentrantLock writeLock = new ReentrantLock();
     private String clientId;
-    private boolean isRunning;
-    private Gson gson;
+    private volatile boolean isRunning;
+    private final AtomicBoolean cleanedUp = new AtomicBoolean();
+    private volatile long ackedTick = -1; // last snapshot the client confirmed, -1 = none
+    private volatile Lobby lobby;
+    private volatile long lastReceivedNanos = System.nanoTime();
+    private final RttEstimator rtt = new RttEstimator();
+    private volatile SessionRegistry.Session session;
+    private volatile boolean resumed;  // took over the slot of an earlier connection
+    private volatile boolean leaving;  // the client said DISCONNECT itself
+
+    // UDP side channel, once the client has sent its first datagram
+    private volatile long datagramToken;
+    private volatile SocketAddress datagramAddress;
+    private final AtomicLong datagramSendSequence = new AtomicLong();
+    private long datagramReceiveSequence; // datagram receiver thread only
 
     public ClientHandler(Socket socket, NetworkManager networkManager) {
         this.clientSocket = socket;
         this.networkManager = networkManager;
-        this.gson = new Gson();
+        this.codecs = networkManager.getCodecs();
+        this.codec = codecs.json();
+        this.executorStrategy = networkManager.getExecutorStrategy();
+        this.config = ServerConfig.defaults();
+        this.outbound = config.newOutboundQueue();
+        this.isRunning = true;
+    }
+
+    public ClientHandler(Socket socket, GameServer gameServer) {
+        this.clientSocket = socket;
+        this.gameServer = gameServer;
+        this.codecs = gameServer.getCodecs();
+        this.codec = codecs.json();
+        this.executorStrategy = gameServer.getConfig().getExecutorStrategy();
+        this.config = gameServer.getConfig();
+        this.outbound = config.newOutboundQueue();
+        this.isRunning = true;
+    }
+
+    // NIO mode: reads and writes are driven by the transport's event loop
+    public ClientHandler(NioTransport.Connection connection, GameServer gameServer) {
+        this.connection = connection;
+        this.gameServer = gameServer;
+        this.codecs = gameServer.getCodecs();
+        this.codec = codecs.json();
+        this.executorStrategy = gameServer.getConfig().getExecutorStrategy();
+        this.config = gameServer.getConfig();
+        this.outbound = config.newOutboundQueue();
         this.isRunning = true;
     }
 
@@ -24,6 +79,7 @@ public class ClientHandler implements Runnable {
     public void run() {
         try {
             setupStreams();
+            executorStrategy.startThread("client-writer", this::drainOutbound);
             handleClient();
         } catch (IOException e) {
             handleError(e);
@@ -33,67 +89,285 @@ public class ClientHandler implements Runnable {
     }
 
     private void setupStreams() throws IOException {
-        out = new PrintWriter(clientSocket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+        clientSocket.setTcpNoDelay(config.isTcpNoDelay());
+        // Only the writer thread flushes, once per batch of queued frames
+        out = new BufferedOutputStream(clientSocket.getOutputStream(), WRITE_BUFFER_SIZE);
+        in = new BufferedInputStream(clientSocket.getInputStream());
     }
 
     private void handleClient() {
         try {
-            String message;
-            while (isRunning && (message = in.readLine()) != null) {
-                NetworkMessage networkMessage = gson.fromJson(
-                        message,
-                        NetworkMessage.class
-                );
-
-                // Handle initial connection message
-                if (networkMessage.getType() == NetworkMessage.Type.CONNECT) {
-                    ConnectionData data = (ConnectionData) networkMessage.getData();
-                    clientId = data.playerId;
-                }
-
-                // Forward message to network manager
-                networkManager.broadcastMessage(networkMessage);
+            NetworkMessage message;
+            while (isRunning && (message = codec.read(in)) != null) {
+                handleIncoming(message);
             }
         } catch (IOException e) {
             handleError(e);
         }
     }
 
+    // NIO mode and datagrams: decode the next frame with whatever codec is currently negotiated
+    NetworkMessage decodeFrame(ByteBuffer buffer) throws IOException {
+        return codec.decode(buffer);
+    }
+
+    void handleIncoming(NetworkMessage networkMessage) {
+        lastReceivedNanos = System.nanoTime();
+
+        // Heartbeats are answered here and never reach the game
+        switch (networkMessage.getType()) {
+            case PING -> {
+                sendMessage(new NetworkMessage(NetworkMessage.Type.PONG, networkMessage.getData()));
+                return;
+            }
+            case PONG -> {
+                if (networkMessage.getData() instanceof Long sentNanos) {
+                    rtt.onPong(sentNanos);
+                }
+                return;
+            }
+            case DISCONNECT -> leaving = true;
+            default -> {
+            }
+        }
+
+        // Handle initial connection message
+        if (networkMessage.getType() == NetworkMessage.Type.CONNECT) {
+            ConnectionData data = (ConnectionData) networkMessage.getData();
+            clientId = data.playerId;
+            negotiateCodec(data);
+        }
+
+        forward(networkMessage);
+    }
+
+    private void negotiateCodec(ConnectionData request) {
+        // Clients that offer nothing keep talking JSON and get no answer
+        if (request.codecs == null) return;
+
+        MessageCodec chosen = codecs.negotiate(request.codecs);
+        ConnectionData reply = new ConnectionData(request.playerId, request.isHost);
+        reply.codec = chosen.name();
+
+        SessionRegistry sessions = gameServer != null ? gameServer.getSessions() : null;
+        if (sessions != null && session == null) {
+            session = request.sessionToken != null
+                    ? sessions.resume(request.sessionToken, request.playerId, this) : null;
+            resumed = session != null;
+            if (session == null) {
+                session = sessions.open(request.playerId, this);
+            }
+            reply.sessionToken = session.getToken();
+            reply.resumed = resumed;
+        }
+
+        DatagramTransport datagrams = gameServer != null ? gameServer.getDatagramTransport() : null;
+        if (datagrams != null && datagramToken == 0) {
+            datagramToken = datagrams.register(this);
+            reply.datagramPort = datagrams.getLocalPort();
+            reply.datagramToken = datagramToken;
+        }
+
+        boolean accepted;
+        writeLock.lock();
+        try {
+            // The answer still goes out in JSON; every frame after it uses the new codec
+            accepted = enqueue(EncodedMessage.of(new NetworkMessage(NetworkMessage.Type.CONNECT, reply)));
+            codec = chosen;
+        } finally {
+            writeLock.unlock();
+        }
+        if (!accepted) {
+            evictSlowConsumer();
+        }
+    }
+
+    // Taking a seat in a lobby: from here on binary frames in both directions
+    // index players through the lobby's table; until then every id goes as a
+    // literal. Under the write lock the client switches codecs, becomes
+    // visible to the lobby's broadcasts through seat, and is sent every index
+    // the lobby has handed out so far. Whatever the lobby sends it afterwards
+    // queues behind that, and later indices are announced to it, so it never
+    // meets an index it does not know.
+    void enterLobby(MessageCodecs lobbyCodecs, String lobbyId, Runnable seat) {
+        writeLock.lock();
+        try {
+            codecs = lobbyCodecs;
+            MessageCodec same = lobbyCodecs.byName(codec.name());
+            codec = same != null ? same : lobbyCodecs.json();
+            seat.run();
+
+            ConnectionData indices = new ConnectionData(clientId, false);
+            indices.knownPlayers = lobbyCodecs.getIndexTable().snapshot();
+            indices.lobbyId = lobbyId;
+            // A connection that just sent CONNECT has nothing queued, so this
+            // always fits; a full queue is left to the next send to evict
+            enqueue(EncodedMessage.of(new NetworkMessage(NetworkMessage.Type.CONNECT, indices)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void forward(NetworkMessage message) {
+        if (gameServer != null) {
+            gameServer.handleMessage(this, message);
+        } else {
+            // Forward message to network manager
+            networkManager.broadcastMessage(message);
+        }
+    }
+
     public String getPlayerId() {
         return clientId;
     }
 
 
     public void sendMessage(NetworkMessage message) {
-        if (out != null && !clientSocket.isClosed()) {
-            try {
-                String jsonMessage = gson.toJson(message);
-                out.println(jsonMessage);
-            } catch (Exception e) {
+        sendEncoded(EncodedMessage.of(message));
+    }
+
+    // Shared by broadcasts: the frame for this client's codec is encoded at most once.
+    // Never blocks on the socket; the frame is queued for this client's writer.
+    public void sendEncoded(EncodedMessage message) {
+        boolean accepted;
+        writeLock.lock();
+        try {
+            accepted = enqueue(message);
+        } finally {
+            writeLock.unlock();
+        }
+        if (!accepted) {
+            evictSlowConsumer();
+        }
+    }
+
+    // Position updates and snapshots go by UDP when the client has a datagram
+    // channel and the frame fits; a lost one is replaced by the next
+    public void sendUnreliable(EncodedMessage message) {
+        DatagramTransport datagrams = gameServer != null ? gameServer.getDatagramTransport() : null;
+        if (datagrams != null && datagramAddress != null && isRunning
+                && datagrams.send(this, message.frameFor(codec))) {
+            return;
+        }
+        sendEncoded(message);
+    }
+
+    // Caller holds writeLock so frames are queued in the codec they were encoded with
+    private boolean enqueue(EncodedMessage message) {
+        if (!isRunning) return true;
+
+        boolean accepted = outbound.offer(message.frameFor(codec), coalesceKey(message.getMessage()));
+        if (accepted && connection != null) {
+            connection.requestFlush();
+        }
+        return accepted;
+    }
+
+    // Frames that a newer frame with the same key makes obsolete: movement per
+    // player, and snapshots, which are always deltas against an acked tick
+    private static String coalesceKey(NetworkMessage message) {
+        return switch (message.getType()) {
+            case PLAYER_UPDATE -> message.getData() instanceof PlayerUpdateData update
+                    ? "update:" + update.playerId : null;
+            case SNAPSHOT -> "snapshot";
+            default -> null;
+        };
+    }
+
+    private void evictSlowConsumer() {
+        System.err.println("Disconnecting slow client " + clientId + ": outbound queue at "
+                + outbound.depth() + "/" + outbound.getCapacity()
+                + ", oldest frame " + outbound.oldestAgeMillis() + " ms");
+        stop();
+    }
+
+    // Blocking mode: the only thread that ever writes to this client's socket.
+    // Everything queued by one dispatch or tick is written into the buffer and
+    // goes out with a single flush.
+    private void drainOutbound() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMillis());
+        try {
+            byte[] frame;
+            while ((frame = outbound.take()) != null) {
+                long flushDeadline = System.nanoTime() + flushIntervalNanos;
+                do {
+                    out.write(frame);
+                } while ((frame = nextInBatch(flushDeadline)) != null);
+
+                out.flush();
+                flushCount++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (isRunning) {
                 handleError(e);
+                cleanup();
             }
         }
     }
 
+    private byte[] nextInBatch(long flushDeadline) throws InterruptedException {
+        byte[] frame = outbound.poll();
+        if (frame != null) {
+            return frame;
+        }
+        long remaining = flushDeadline - System.nanoTime();
+        return remaining > 0 ? outbound.poll(remaining) : null;
+    }
+
+    // Called by the NIO event loop after each gathering write
+    void onFlushed() {
+        flushCount++;
+    }
+
+    // Socket writes so far; compare with the queue's enqueued count to see batching
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    // NIO mode: the event loop pulls frames while the socket accepts them
+    byte[] pollOutbound() {
+        return outbound.poll();
+    }
+
+    public OutboundQueue getOutboundQueue() {
+        return outbound;
+    }
+
     private void handleError(Exception e) {
         System.err.println("Error handling client " + clientId + ": " + e.getMessage());
         NetworkMessage errorMessage = new NetworkMessage(
                 NetworkMessage.Type.ERROR,
                 "Client error: " + e.getMessage()
         );
-        networkManager.broadcastMessage(errorMessage);
+        forward(errorMessage);
     }
 
+    // Called by the NIO transport once the channel has been closed
+    void onConnectionClosed() {
+        cleanup();
+    }
+
+    // No monitor here so a virtual thread closing its socket never pins its carrier
     private void cleanup() {
         isRunning = false;
+        if (!cleanedUp.compareAndSet(false, true)) return;
+        outbound.close();
+        if (datagramToken != 0 && gameServer != null && gameServer.getDatagramTransport() != null) {
+            gameServer.getDatagramTransport().unregister(datagramToken);
+        }
 
-        try {
-            if (out != null) out.close();
-            if (in != null) in.close();
-            if (clientSocket != null) clientSocket.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (connection != null) {
+            connection.close();
+        } else {
+            try {
+                if (out != null) out.close();
+                if (in != null) in.close();
+                if (clientSocket != null) clientSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
 
         // Notify network manager of disconnection
@@ -102,10 +376,80 @@ public class ClientHandler implements Runnable {
                     NetworkMessage.Type.DISCONNECT,
                     clientId
             );
-            networkManager.broadcastMessage(disconnectMessage);
+            forward(disconnectMessage);
         }
     }
 
+    // Set once CONNECT has placed the client in a lobby
+    Lobby getLobby() {
+        return lobby;
+    }
+
+    void setLobby(Lobby lobby) {
+        this.lobby = lobby;
+    }
+
+    // Null until a CONNECT with codec negotiation
+    SessionRegistry.Session getSession() {
+        return session;
+    }
+
+    boolean isResumed() {
+        return resumed;
+    }
+
+    boolean isLeaving() {
+        return leaving;
+    }
+
+    // Snapshots sent to this client are deltas against this tick
+    long getAckedTick() {
+        return ackedTick;
+    }
+
+    // Acks can come over TCP or UDP, so an older one never replaces a newer one;
+    // -1 asks for a full snapshot
+    void acknowledgeSnapshot(long tick) {
+        if (tick < 0 || tick > ackedTick) {
+            ackedTick = tick;
+        }
+    }
+
+    // Called by the datagram receiver. Drops datagrams that arrive after a newer
+    // one; otherwise remembers where the client sends from, which also follows
+    // NAT rebinding.
+    boolean acceptDatagram(SocketAddress from, long sequence) {
+        if (sequence <= datagramReceiveSequence) {
+            return false;
+        }
+        datagramReceiveSequence = sequence;
+        datagramAddress = from;
+        lastReceivedNanos = System.nanoTime();
+        return true;
+    }
+
+    // Anything from the client, over TCP or UDP, counts as a sign of life
+    long getLastReceivedNanos() {
+        return lastReceivedNanos;
+    }
+
+    // Round-trip time measured by the heartbeat's PING/PONG
+    public RttEstimator getRtt() {
+        return rtt;
+    }
+
+    SocketAddress getDatagramAddress() {
+        return datagramAddress;
+    }
+
+    long getDatagramToken() {
+        return datagramToken;
+    }
+
+    long nextDatagramSequence() {
+        return datagramSendSequence.incrementAndGet();
+    }
+
     public String getClientId() {
         return clientId;
     }
@@ -118,4 +462,4 @@ public class ClientHandler implements Runnable {
         isRunning = false;
         cleanup();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package event;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Opens thousands of idle client connections against a GameServer and reports the
+// server's platform thread count, process RSS and accept latency.
+//
+// Run each strategy in its own JVM so RSS numbers are not polluted by the previous run:
+//   java -Xss1m event.ConnectionBenchmark platform 1000 5000 10000
+//   java -Xss1m event.ConnectionBenchmark virtual 1000 5000 10000
+// Needs roughly 2 file descriptors per client (ulimit -n 25000 for 10k clients).
+public class ConnectionBenchmark {
+    private static final int[] DEFAULT_CLIENT_COUNTS = {1000, 5000, 10000};
+    private static final long REGISTER_TIMEOUT_NANOS = 5_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        ExecutorStrategy strategy = args.length > 0
+                ? ExecutorStrategy.fromName(args[0])
+                : ExecutorStrategy.VIRTUAL;
+        int[] clientCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_CLIENT_COUNTS;
+
+        System.out.printf("strategy=%s%n", strategy);
+        System.out.printf("%8s %10s %12s %12s %12s %12s%n",
+                "clients", "threads", "rss(MB)", "rss/conn(KB)", "p50(us)", "p99(us)");
+
+        for (int clientCount : clientCounts) {
+            runOnce(strategy, clientCount);
+        }
+    }
+
+    private static void runOnce(ExecutorStrategy strategy, int clientCount) throws Exception {
+        ServerConfig config = new ServerConfig.Builder()
+                .transportMode(ServerConfig.TransportMode.BLOCKING)
+                .executorStrategy(strategy)
+                .maxConnections(clientCount)
+                .build();
+        GameServer server = new GameServer(0, config);
+        List<SocketChannel> connections = new ArrayList<>(clientCount);
+        long[] acceptLatencies = new long[clientCount];
+
+        System.gc();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long rssBefore = readRssBytes();
+
+        try {
+            InetSocketAddress address = new InetSocketAddress("localhost", server.getLocalPort());
+            for (int i = 0; i < clientCount; i++) {
+                long start = System.nanoTime();
+                connections.add(SocketChannel.open(address));
+
+                // Latency until the server has a running handler for this connection
+                while (server.getClientCount() <= i) {
+                    if (System.nanoTime() - start > REGISTER_TIMEOUT_NANOS) {
+                        throw new IOException("Server did not register client " + i);
+                    }
+                    Thread.onSpinWait();
+                }
+                acceptLatencies[i] = System.nanoTime() - start;
+            }
+
+            System.gc();
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+            long rss = readRssBytes() - rssBefore;
+
+            Arrays.sort(acceptLatencies);
+            System.out.printf("%8d %10d %12.1f %12.2f %12.1f %12.1f%n",
+                    clientCount,
+                    threads,
+                    rss / (1024.0 * 1024.0),
+                    rss / 1024.0 / clientCount,
+                    percentile(acceptLatencies, 0.50) / 1000.0,
+                    percentile(acceptLatencies, 0.99) / 1000.0);
+        } finally {
+            for (SocketChannel connection : connections) {
+                connection.close();
+            }
+            server.shutdown();
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)));
+        return sorted[index];
+    }
+
+    // Resident set size from /proc; falls back to used heap where /proc is unavailable
+    private static long readRssBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    String kilobytes = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kilobytes) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
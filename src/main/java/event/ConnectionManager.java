@@ -2,26 +2,81 @@ package event;
 
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+// Keepalive for every connection on the server, driven by one scheduled
+// thread rather than a sleeping thread per client. Each round sends every
+// client a PING carrying the send time; the PONG that echoes it back gives
+// the client's round-trip time. Clients that have sent nothing at all for
+// IDLE_TIMEOUT, not even a PONG, are disconnected.
 public class ConnectionManager {
     private static final int CONNECTION_TIMEOUT = 30000; // 30 seconds
-    private static final int PING_INTERVAL = 5000; // 5 seconds
+    private static final int PING_INTERVAL = 1000; // 1 second, often enough to track RTT
+    private static final long IDLE_TIMEOUT = 10000; // 10 missed PINGs
+
+    private final Collection<ClientHandler> clients;
+    private final ScheduledExecutorService scheduler;
+    private volatile long evictedCount;
+
+    public ConnectionManager(Collection<ClientHandler> clients) {
+        this.clients = clients;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "connection-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
     public static void setupConnectionTimeouts(Socket socket) throws SocketException {
         socket.setSoTimeout(CONNECTION_TIMEOUT);
     }
 
-    public static void startPingThread(ClientHandler client) {
-        new Thread(() -> {
-            while (client.isRunning()) {
-                try {
-                    Thread.sleep(PING_INTERVAL);
-                    client.sendMessage(new NetworkMessage(NetworkMessage.Type.PING, null));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::heartbeat, PING_INTERVAL, PING_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void heartbeat() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT);
+
+        // PINGs are queued, never written here, so a slow client cannot stall the round
+        for (ClientHandler client : clients) {
+            try {
+                heartbeat(client, now, idleNanos);
+            } catch (RuntimeException e) {
+                // An exception would cancel the scheduled task and stop keepalive for everyone
+                System.err.println("Error in heartbeat of client " + client.getClientId() + ": " + e.getMessage());
             }
-        }).start();
+        }
+    }
+
+    private void heartbeat(ClientHandler client, long now, long idleNanos) {
+        if (!client.isRunning()) return;
+
+        if (now - client.getLastReceivedNanos() > idleNanos) {
+            System.err.println("Disconnecting idle client " + client.getClientId() + ": nothing received for "
+                    + TimeUnit.NANOSECONDS.toMillis(now - client.getLastReceivedNanos()) + " ms");
+            evictedCount++;
+            client.stop();
+            return;
+        }
+        client.sendMessage(new NetworkMessage(NetworkMessage.Type.PING, System.nanoTime()));
+    }
+
+    // Other connection timers, e.g. session grace windows, share the heartbeat thread
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
     }
 }
@@ -0,0 +1,200 @@
+package event;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Compares the two ways of serialising game-state mutations under contention:
+// every client thread taking one lock around the shared maps, versus posting
+// commands to a single-writer Mailbox like Lobby does. Reports throughput and
+// latency from "message handled by the client thread" to "state updated".
+//
+// Each producer keeps at most WINDOW commands in flight, like a client whose
+// socket only delivers so much at once, so the actor's queue stays bounded
+// and its latency includes realistic queueing rather than an ever-growing backlog.
+//
+//   java event.ContentionBenchmark [commandsPerProducer] [producers...]
+//   java event.ContentionBenchmark 200000 1 2 4 8 16 32
+public class ContentionBenchmark {
+    private static final int DEFAULT_COMMANDS = 200_000;
+    private static final int[] DEFAULT_PRODUCERS = {1, 2, 4, 8, 16, 32};
+    private static final int WINDOW = 64;
+    private static final int SAMPLE_EVERY = 32;
+    private static final int PLAYERS = 10;
+    private static final int TASKS_PER_PLAYER = 8;
+    private static final int WARMUP_ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COMMANDS;
+        int[] producerCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_PRODUCERS;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runLocked(4, commands / 4);
+            runActor(4, commands / 4);
+        }
+
+        System.out.printf("%-6s %10s %14s %12s %12s %12s%n",
+                "mode", "producers", "ops/s", "p50(us)", "p99(us)", "p999(us)");
+        for (int producers : producerCounts) {
+            print("lock", producers, runLocked(producers, commands));
+            print("actor", producers, runActor(producers, commands));
+        }
+    }
+
+    // Baseline: the producer mutates the state itself while holding the lock
+    private static Result runLocked(int producers, int commands) throws InterruptedException {
+        GameModel model = new GameModel();
+        ReentrantLock lock = new ReentrantLock();
+        long[][] latencies = new long[producers][commands / SAMPLE_EVERY + 1];
+
+        long elapsed = runProducers(producers, (producer, i) -> {
+            long start = System.nanoTime();
+            lock.lock();
+            try {
+                model.apply(producer, i);
+            } finally {
+                lock.unlock();
+            }
+            if (i % SAMPLE_EVERY == 0) {
+                latencies[producer][i / SAMPLE_EVERY] = System.nanoTime() - start;
+            }
+        }, commands, () -> { });
+
+        model.verify((long) producers * commands);
+        return new Result(producers, commands, elapsed, latencies);
+    }
+
+    // Single writer: producers only enqueue; one thread owns the state
+    private static Result runActor(int producers, int commands) throws InterruptedException {
+        GameModel model = new GameModel();
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        Mailbox mailbox = new Mailbox("benchmark", worker);
+        long[][] latencies = new long[producers][commands / SAMPLE_EVERY + 1];
+        Semaphore[] windows = new Semaphore[producers];
+        for (int p = 0; p < producers; p++) {
+            windows[p] = new Semaphore(WINDOW);
+        }
+
+        try {
+            long elapsed = runProducers(producers, (producer, i) -> {
+                long start = System.nanoTime();
+                windows[producer].acquireUninterruptibly();
+                mailbox.post(() -> {
+                    model.apply(producer, i);
+                    if (i % SAMPLE_EVERY == 0) {
+                        latencies[producer][i / SAMPLE_EVERY] = System.nanoTime() - start;
+                    }
+                    windows[producer].release();
+                });
+            }, commands, () -> {
+                // Done once every producer's window is back to full
+                for (Semaphore window : windows) {
+                    window.acquireUninterruptibly(WINDOW);
+                }
+            });
+
+            model.verify((long) producers * commands);
+            return new Result(producers, commands, elapsed, latencies);
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    private static long runProducers(int producers, Command command, int commands, Runnable awaitApplied)
+            throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(producers);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < commands; i++) {
+                    command.run(producer, i);
+                }
+                done.countDown();
+            }, "producer-" + p);
+            thread.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        awaitApplied.run();
+        return System.nanoTime() - start;
+    }
+
+    private static void print(String mode, int producers, Result result) {
+        long[] sorted = Arrays.stream(result.latencies)
+                .flatMapToLong(Arrays::stream)
+                .filter(latency -> latency > 0)
+                .sorted()
+                .toArray();
+        double opsPerSecond = (double) producers * result.commands / (result.elapsedNanos / 1e9);
+        System.out.printf("%-6s %10d %14.0f %12.1f %12.1f %12.1f%n",
+                mode, producers, opsPerSecond,
+                percentile(sorted, 0.50) / 1000.0,
+                percentile(sorted, 0.99) / 1000.0,
+                percentile(sorted, 0.999) / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private interface Command {
+        void run(int producer, int sequence);
+    }
+
+    private record Result(int producers, int commands, long elapsedNanos, long[][] latencies) {
+    }
+
+    // Same shape as the work Lobby does per message: plain HashMaps for votes
+    // and task progress plus a few counters, none of it thread-safe
+    private static class GameModel {
+        private final Map<String, String> votes = new HashMap<>();
+        private final Map<String, Integer> tasksDone = new HashMap<>();
+        private final String[] playerIds = new String[PLAYERS];
+        private long applied;
+        private long kills;
+
+        GameModel() {
+            for (int i = 0; i < PLAYERS; i++) {
+                playerIds[i] = "player-" + i;
+            }
+        }
+
+        void apply(int producer, int sequence) {
+            String playerId = playerIds[(producer + sequence) % PLAYERS];
+            switch (sequence & 3) {
+                case 0 -> votes.put(playerId, playerIds[sequence % PLAYERS]);
+                case 1 -> tasksDone.merge(playerId, 1, (a, b) -> Math.min(a + b, TASKS_PER_PLAYER));
+                case 2 -> kills++;
+                default -> votes.remove(playerId);
+            }
+            applied++;
+        }
+
+        void verify(long expected) {
+            if (applied != expected) {
+                throw new IllegalStateException("Lost updates: applied " + applied + " of " + expected);
+            }
+        }
+    }
+}
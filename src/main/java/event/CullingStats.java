@@ -0,0 +1,67 @@
+package event;
+
+import java.util.Arrays;
+
+// Per-frame counts of world objects drawn and skipped because they were
+// outside the camera's view. Counted on the render thread; the getters
+// report the last completed frame.
+public class CullingStats {
+    public enum Kind {
+        ROOM, VENT, DOOR, TASK, PLAYER, PARTICLE, ANIMATION
+    }
+
+    private final int[] drawn = new int[Kind.values().length];
+    private final int[] culled = new int[Kind.values().length];
+    private volatile int[] lastDrawn = new int[Kind.values().length];
+    private volatile int[] lastCulled = new int[Kind.values().length];
+
+    public void beginFrame() {
+        Arrays.fill(drawn, 0);
+        Arrays.fill(culled, 0);
+    }
+
+    // Counts one object and passes its visibility through, for use as
+    // if (stats.count(kind, view.intersects(...))) draw(...)
+    public boolean count(Kind kind, boolean visible) {
+        if (visible) {
+            drawn[kind.ordinal()]++;
+        } else {
+            culled[kind.ordinal()]++;
+        }
+        return visible;
+    }
+
+    public void endFrame() {
+        lastDrawn = drawn.clone();
+        lastCulled = culled.clone();
+    }
+
+    public int getDrawn(Kind kind) {
+        return lastDrawn[kind.ordinal()];
+    }
+
+    public int getCulled(Kind kind) {
+        return lastCulled[kind.ordinal()];
+    }
+
+    public int getDrawn() {
+        return Arrays.stream(lastDrawn).sum();
+    }
+
+    public int getCulled() {
+        return Arrays.stream(lastCulled).sum();
+    }
+
+    @Override
+    public String toString() {
+        int[] shown = lastDrawn;
+        int[] skipped = lastCulled;
+        StringBuilder sb = new StringBuilder("drawn/culled");
+        for (Kind kind : Kind.values()) {
+            sb.append(' ').append(kind.name().toLowerCase())
+                    .append(' ').append(shown[kind.ordinal()])
+                    .append('/').append(skipped[kind.ordinal()]);
+        }
+        return sb.toString();
+    }
+}
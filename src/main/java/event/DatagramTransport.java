@@ -0,0 +1,161 @@
+package event;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Optional UDP side channel for latest-value-wins traffic: position updates and
+// delta snapshots. A lost datagram is simply superseded by the next one, so it
+// never holds up later positions the way a lost TCP segment does. Votes, kills,
+// chat and everything else stay on the client's TCP connection.
+//
+// Datagram layout: session token (8 bytes), sequence number (8 bytes), then one
+// frame in the client's negotiated codec. The token ties a datagram to the TCP
+// session that was handed it; sequence numbers let both ends drop reordered
+// stale packets.
+public class DatagramTransport {
+    static final int HEADER_SIZE = 16;
+    // Stays under the usual path MTU so datagrams are never fragmented;
+    // anything bigger falls back to TCP
+    static final int MAX_DATAGRAM_SIZE = 1200;
+
+    private final GameServer server;
+    private final DatagramChannel channel;
+    private final Map<Long, ClientHandler> clientsByToken = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private volatile boolean isRunning;
+
+    // Metrics; received and stale are only written by the receiver thread
+    private final AtomicLong sentCount = new AtomicLong();
+    private volatile long receivedCount;
+    private volatile long staleCount;
+
+    public DatagramTransport(GameServer server, int port) throws IOException {
+        this.server = server;
+        this.channel = DatagramChannel.open();
+        this.channel.bind(new InetSocketAddress(port));
+    }
+
+    public void start(ExecutorStrategy executorStrategy) {
+        isRunning = true;
+        executorStrategy.startThread("datagram-receiver", this::receiveLoop);
+    }
+
+    // Called while answering CONNECT; the token goes back to the client over TCP
+    long register(ClientHandler client) {
+        while (true) {
+            long token = random.nextLong();
+            if (token != 0 && clientsByToken.putIfAbsent(token, client) == null) {
+                return token;
+            }
+        }
+    }
+
+    void unregister(long token) {
+        clientsByToken.remove(token);
+    }
+
+    // False if the frame has to go over TCP instead: the client has not sent us
+    // a datagram yet, the frame does not fit, or the send failed
+    boolean send(ClientHandler client, byte[] frame) {
+        SocketAddress address = client.getDatagramAddress();
+        if (address == null || frame.length + HEADER_SIZE > MAX_DATAGRAM_SIZE) {
+            return false;
+        }
+
+        try {
+            channel.send(packet(client.getDatagramToken(), client.nextDatagramSequence(), frame), address);
+            sentCount.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static ByteBuffer packet(long token, long sequence, byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + frame.length);
+        buffer.putLong(token).putLong(sequence).put(frame);
+        return buffer.flip();
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        while (isRunning) {
+            try {
+                buffer.clear();
+                SocketAddress from = channel.receive(buffer);
+                buffer.flip();
+                handleDatagram(from, buffer);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                if (isRunning) {
+                    System.err.println("Error receiving datagram: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleDatagram(SocketAddress from, ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) return;
+
+        ClientHandler client = clientsByToken.get(buffer.getLong());
+        if (client == null) return;
+
+        if (!client.acceptDatagram(from, buffer.getLong())) {
+            staleCount++;
+            return;
+        }
+        receivedCount++;
+
+        // An empty payload only announces the client's address
+        if (!buffer.hasRemaining()) return;
+
+        try {
+            NetworkMessage message = client.decodeFrame(buffer);
+            if (message != null && isUnreliable(message.getType())) {
+                server.handleMessage(client, message);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Garbage in a datagram only costs that datagram
+        }
+    }
+
+    // The only types allowed in either direction; anything else must be reliable
+    static boolean isUnreliable(NetworkMessage.Type type) {
+        return type == NetworkMessage.Type.PLAYER_UPDATE
+                || type == NetworkMessage.Type.PLAYER_INPUT
+                || type == NetworkMessage.Type.SNAPSHOT
+                || type == NetworkMessage.Type.STATE_ACK;
+    }
+
+    public int getLocalPort() {
+        try {
+            SocketAddress address = channel.getLocalAddress();
+            return address instanceof InetSocketAddress inet ? inet.getPort() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getSentCount() { return sentCount.get(); }
+    public long getReceivedCount() { return receivedCount; }
+    public long getStaleCount() { return staleCount; }
+
+    public void shutdown() {
+        isRunning = false;
+        clientsByToken.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing datagram channel: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// A NetworkMessage together with its wire frames. Broadcasts wrap the message once
+// and every recipient asks for the frame of its own codec; each frame is encoded
+// at most once and the arrays are never modified after creation.
+//
+// A frame is only shared with the very codec instance that encoded it: binary
+// codecs of different lobbies have the same id but index players through
+// different tables, so their bytes are not interchangeable.
+public final class EncodedMessage {
+    private final NetworkMessage message;
+    private final MessageCodec[] encoders;
+    private final byte[][] frames;
+
+    private EncodedMessage(NetworkMessage message) {
+        this.message = message;
+        this.encoders = new MessageCodec[MessageCodec.CODEC_COUNT];
+        this.frames = new byte[MessageCodec.CODEC_COUNT][];
+    }
+
+    public static EncodedMessage of(NetworkMessage message) {
+        return new EncodedMessage(message);
+    }
+
+    public byte[] frameFor(MessageCodec codec) {
+        synchronized (frames) {
+            int slot = codec.id();
+            if (encoders[slot] == codec) {
+                return frames[slot];
+            }
+            byte[] frame = codec.encode(message);
+            if (encoders[slot] == null) {
+                encoders[slot] = codec;
+                frames[slot] = frame;
+            }
+            return frame;
+        }
+    }
+
+    // A fresh read-only view per recipient so positions are never shared between writers
+    public ByteBuffer asBuffer(MessageCodec codec) {
+        return ByteBuffer.wrap(frameFor(codec)).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream out, MessageCodec codec) throws IOException {
+        out.write(frameFor(codec));
+    }
+
+    public NetworkMessage getMessage() { return message; }
+    public NetworkMessage.Type getType() { return message.getType(); }
+}
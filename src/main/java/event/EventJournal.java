@@ -0,0 +1,322 @@
+package event;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+// Append-only log of one game's events, written through a memory-mapped file
+// in fixed 64-byte records. The lobby's worker appends with plain memory
+// writes and never waits for the disk: the JournalManager's flusher thread
+// forces what was written in batches and maps the next region ahead of time.
+//
+// Record layout (big-endian):
+//   0  int   CRC32 of bytes 4-63; a record that fails it ends the journal
+//   4  byte  kind
+//   6  short STRING: bytes of the string in this record
+//   8  long  sequence, from 1 without gaps
+//  16  long  time, epoch millis
+//  24  int   actor string id, -1 = none (STRING: the id being defined)
+//  28  int   target string id, -1 = none (STRING: up to 36 bytes of UTF-8)
+//  32  float x, 36 float y
+//  40  long  value, meaning depends on kind
+//  48  reserved
+// Strings (player ids, names, task ids) are written once as STRING records,
+// split over several if long, and referred to by id afterwards.
+public class EventJournal {
+    public static final int RECORD_SIZE = 64;
+    static final int REGION_SIZE = RECORD_SIZE * 65536; // 4 MB mapped at a time
+    private static final int STRING_CHUNK = RECORD_SIZE - 28;
+
+    // Record kinds; values are on disk, never renumber
+    public static final int STRING = 1;
+    public static final int LOBBY = 2;          // actor: lobby id
+    public static final int JOIN = 3;           // actor: player, target: name
+    public static final int LEAVE = 4;          // actor: player
+    public static final int ROLE = 5;           // actor: player, value: 1 = impostor
+    public static final int GAME_START = 6;
+    public static final int KILL = 7;           // actor: killer, target: victim, x/y: where
+    public static final int VOTE = 8;           // actor: voter, target: voted, none = skip
+    public static final int TASK_COMPLETE = 9;  // actor: player, target: task id, value: TaskType
+    public static final int SABOTAGE = 10;      // value: SabotageType, x: duration in ms
+    public static final int EMERGENCY_MEETING = 11; // actor: reporter, target: body, value: EmergencyType
+    public static final int GAME_END = 12;      // value: GameEndReason
+    public static final int CLOSED = 13;        // the lobby shut down cleanly; nothing to recover
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32 crc = new CRC32();
+    private long nextSequence = 1;
+    private boolean failed;
+
+    // Written by the appending thread, read by the flusher
+    private volatile long writeOffset;
+    private volatile Premapped nextRegion;
+    private volatile boolean closed;
+
+    // Flusher thread only
+    private long syncedOffset;
+
+    // Metrics
+    private volatile long appendedCount;
+    private volatile long mapStalls; // the appender had to map a region itself
+
+    private EventJournal(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    public static EventJournal create(Path path, String lobbyId) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        EventJournal journal = new EventJournal(path, channel);
+        journal.regions.add(journal.map(0));
+        journal.append(LOBBY, lobbyId, null, 0, 0, 0);
+        return journal;
+    }
+
+    private MappedByteBuffer map(long offset) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, offset, REGION_SIZE);
+    }
+
+    // Game thread. Copies one record into the mapping; an I/O failure turns
+    // the journal off rather than disturbing the game.
+    public void append(int kind, String actor, String target, double x, double y, long value) {
+        if (failed || closed) return;
+
+        try {
+            int actorId = stringId(actor);
+            int targetId = stringId(target);
+
+            recordBuffer.clear();
+            recordBuffer.putInt(0).put((byte) kind).put((byte) 0).putShort((short) 0)
+                    .putLong(nextSequence).putLong(System.currentTimeMillis())
+                    .putInt(actorId).putInt(targetId)
+                    .putFloat((float) x).putFloat((float) y)
+                    .putLong(value);
+            while (recordBuffer.hasRemaining()) {
+                recordBuffer.put((byte) 0);
+            }
+            write();
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("Journal " + path + " disabled: " + e.getMessage());
+        }
+    }
+
+    private int stringId(String value) throws IOException {
+        if (value == null) return -1;
+
+        Integer known = stringIds.get(value);
+        if (known != null) return known;
+
+        int id = stringIds.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        do {
+            int length = Math.min(STRING_CHUNK, bytes.length - offset);
+            recordBuffer.clear();
+            recordBuffer.putInt(0).put((byte) STRING).put((byte) 0).putShort((short) length)
+                    .putLong(nextSequence).putLong(System.currentTimeMillis())
+                    .putInt(id).put(bytes, offset, length);
+            while (recordBuffer.hasRemaining()) {
+                recordBuffer.put((byte) 0);
+            }
+            write();
+            offset += length;
+        } while (offset < bytes.length);
+
+        stringIds.put(value, id);
+        return id;
+    }
+
+    // Seals the staged record with its checksum and copies it into the map
+    private void write() throws IOException {
+        crc.reset();
+        crc.update(record, 4, RECORD_SIZE - 4);
+        recordBuffer.putInt(0, (int) crc.getValue());
+
+        long offset = writeOffset;
+        int regionIndex = (int) (offset / REGION_SIZE);
+        if (regionIndex == regions.size()) {
+            Premapped next = nextRegion;
+            if (next != null && next.offset == offset) {
+                regions.add(next.buffer);
+            } else {
+                regions.add(map(offset));
+                mapStalls++;
+            }
+            nextRegion = null;
+        }
+        regions.get(regionIndex).put((int) (offset % REGION_SIZE), record);
+
+        nextSequence++;
+        appendedCount++;
+        writeOffset = offset + RECORD_SIZE;
+    }
+
+    // Game thread: marks the game as finished so it is not recovered
+    public void close() {
+        append(CLOSED, null, null, 0, 0, 0);
+        closed = true;
+    }
+
+    // Flusher thread: forces everything appended since the last call and
+    // maps the next region once the current one is half used
+    void sync() {
+        long target = writeOffset;
+        try {
+            while (syncedOffset < target) {
+                int regionIndex = (int) (syncedOffset / REGION_SIZE);
+                int start = (int) (syncedOffset % REGION_SIZE);
+                int end = (int) Math.min(REGION_SIZE, target - (long) regionIndex * REGION_SIZE);
+                regions.get(regionIndex).force(start, end - start);
+                syncedOffset = (long) regionIndex * REGION_SIZE + end;
+            }
+
+            long nextOffset = (target / REGION_SIZE + 1) * REGION_SIZE;
+            Premapped next = nextRegion;
+            if (!closed && target % REGION_SIZE > REGION_SIZE / 2 && (next == null || next.offset != nextOffset)) {
+                nextRegion = new Premapped(nextOffset, map(nextOffset));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error syncing journal " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Flusher thread, after the final sync. The file keeps its mapped size;
+    // readers stop at the first record that fails its checksum.
+    void release() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal " + path + ": " + e.getMessage());
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    boolean hasUnsynced() {
+        return syncedOffset < writeOffset;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    public long getMapStalls() {
+        return mapStalls;
+    }
+
+    private record Premapped(long offset, MappedByteBuffer buffer) {
+    }
+
+    // One decoded record, with string ids resolved
+    public record Entry(long sequence, long time, int kind, String actor, String target,
+                        float x, float y, long value) {
+    }
+
+    // Reads a journal, also one that is still being written: each poll returns
+    // the complete records appended since the last one.
+    public static class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        private final CRC32 crc = new CRC32();
+        private final Map<Integer, String> strings = new HashMap<>();
+        private long offset;
+        private long nextSequence = 1;
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        public List<Entry> poll() throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            while (readRecord()) {
+                int kind = buffer.get(4);
+                if (kind == STRING) {
+                    int id = buffer.getInt(24);
+                    String chunk = new String(buffer.array(), 28, buffer.getShort(6), StandardCharsets.UTF_8);
+                    strings.merge(id, chunk, String::concat);
+                } else {
+                    entries.add(new Entry(buffer.getLong(8), buffer.getLong(16), kind,
+                            strings.get(buffer.getInt(24)), strings.get(buffer.getInt(28)),
+                            buffer.getFloat(32), buffer.getFloat(36), buffer.getLong(40)));
+                }
+            }
+            return entries;
+        }
+
+        // False at the end of what has been written so far
+        private boolean readRecord() throws IOException {
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) <= 0) return false;
+            }
+
+            crc.reset();
+            crc.update(buffer.array(), 4, RECORD_SIZE - 4);
+            if (buffer.getInt(0) != (int) crc.getValue() || buffer.getLong(8) != nextSequence) {
+                return false;
+            }
+            offset += RECORD_SIZE;
+            nextSequence++;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public static List<Entry> readAll(Path path) throws IOException {
+        try (Reader reader = new Reader(path)) {
+            return reader.poll();
+        }
+    }
+
+    // Offline analysis: prints every event of the given journals and a count per kind
+    public static void main(String[] args) throws IOException {
+        String[] names = {"?", "STRING", "LOBBY", "JOIN", "LEAVE", "ROLE", "GAME_START", "KILL",
+                "VOTE", "TASK_COMPLETE", "SABOTAGE", "EMERGENCY_MEETING", "GAME_END", "CLOSED"};
+        for (String file : args) {
+            Path path = Path.of(file);
+            if (!Files.exists(path)) {
+                System.err.println("No such journal: " + file);
+                continue;
+            }
+
+            Map<String, Integer> counts = new HashMap<>();
+            System.out.println("== " + file);
+            for (Entry entry : readAll(path)) {
+                String name = entry.kind() < names.length ? names[entry.kind()] : "KIND_" + entry.kind();
+                counts.merge(name, 1, Integer::sum);
+                System.out.printf("%6d %tT.%<tL %-17s %s -> %s (%.0f, %.0f) %d%n",
+                        entry.sequence(), entry.time(), name, entry.actor(), entry.target(),
+                        entry.x(), entry.y(), entry.value());
+            }
+            System.out.println(counts);
+        }
+    }
+}
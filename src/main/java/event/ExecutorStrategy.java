@@ -0,0 +1,36 @@
+package event;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public enum ExecutorStrategy {
+    PLATFORM,   // one OS thread per connection, ~1 MB of reserved stack each
+    VIRTUAL;    // one virtual thread per connection, a few KB of heap each
+
+    public ExecutorService newClientExecutor() {
+        return switch (this) {
+            case PLATFORM -> Executors.newCachedThreadPool();
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+    }
+
+    public Thread startThread(String name, Runnable task) {
+        return switch (this) {
+            case PLATFORM -> {
+                Thread thread = new Thread(task, name);
+                thread.start();
+                yield thread;
+            }
+            case VIRTUAL -> Thread.ofVirtual().name(name).start(task);
+        };
+    }
+
+    public static ExecutorStrategy fromName(String name) {
+        for (ExecutorStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown executor strategy: " + name);
+    }
+}
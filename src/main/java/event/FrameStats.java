@@ -0,0 +1,103 @@
+package event;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Frame times of the last WINDOW frames plus running counters, recorded by
+// the game loop thread and read by the HUD or anyone else
+public class FrameStats {
+    private static final int WINDOW = 256;
+
+    private final long[] frameNanos = new long[WINDOW];
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+    private int count;
+
+    private volatile long frames;
+    private volatile long steps;
+    private volatile long lateFrames;   // took over 1.5 target periods
+    private volatile long skippedSteps; // dropped after a stall instead of caught up
+
+    void recordFrame(long nanos, long targetNanos) {
+        lock.lock();
+        try {
+            frameNanos[next] = nanos;
+            next = (next + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+        } finally {
+            lock.unlock();
+        }
+        frames++;
+        if (targetNanos > 0 && nanos > targetNanos * 3 / 2) {
+            lateFrames++;
+        }
+    }
+
+    void recordSteps(int stepped, long skipped) {
+        steps += stepped;
+        skippedSteps += skipped;
+    }
+
+    private long[] window() {
+        long[] sorted;
+        lock.lock();
+        try {
+            sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = frameNanos[(next - count + i + WINDOW) % WINDOW];
+            }
+        } finally {
+            lock.unlock();
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // Averaged over the window
+    public double getFps() {
+        long[] sorted = window();
+        if (sorted.length == 0) return 0;
+        return sorted.length * 1e9 / Arrays.stream(sorted).sum();
+    }
+
+    public double getAverageFrameMillis() {
+        long[] sorted = window();
+        return sorted.length == 0 ? 0 : Arrays.stream(sorted).average().orElse(0) / 1e6;
+    }
+
+    // fraction 0.99 gives the p99 frame time over the window
+    public double getPercentileFrameMillis(double fraction) {
+        long[] sorted = window();
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    public double getMaxFrameMillis() {
+        long[] sorted = window();
+        return sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    public long getSkippedSteps() {
+        return skippedSteps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.0f fps  avg %.1f ms  p99 %.1f ms  max %.1f ms  late %d",
+                getFps(), getAverageFrameMillis(), getPercentileFrameMillis(0.99),
+                getMaxFrameMillis(), lateFrames);
+    }
+}
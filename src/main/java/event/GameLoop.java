@@ -0,0 +1,134 @@
+package event;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
+
+// The client's game loop on its own thread, decoupled from the EDT. The
+// simulation advances in fixed STEP_NANOS steps however fast frames are
+// drawn: every frame adds the elapsed time to an accumulator and runs as many
+// whole steps as it holds. What is left over, as a fraction of a step, is
+// handed to the renderer to draw between the last two simulated states.
+//
+// Frames are paced to the target rate against absolute deadlines, so sleep
+// overshoot on one frame is taken out of the next instead of accumulating.
+public class GameLoop {
+    public static final int STEPS_PER_SECOND = 60;
+    static final long STEP_NANOS = 1_000_000_000L / STEPS_PER_SECOND;
+    // After a stall (GC, window drag) run at most this much simulation in one
+    // frame and drop the rest rather than spiral trying to catch up
+    private static final long MAX_FRAME_NANOS = 250_000_000L;
+    // Thread.sleep can wake this late; the rest of the wait is spun
+    private static final long SPIN_NANOS = 1_500_000L;
+
+    private final Runnable update;
+    private final DoubleConsumer render; // takes the fraction of a step since the last update
+    private final FrameStats stats = new FrameStats();
+    private volatile int targetFps;
+    private volatile boolean running;
+    private Thread thread;
+
+    // targetFps 0 draws as fast as the buffer strategy allows
+    public GameLoop(Runnable update, DoubleConsumer render, int targetFps) {
+        this.update = update;
+        this.render = render;
+        setTargetFps(targetFps);
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        long previous = System.nanoTime();
+        long accumulator = 0;
+        long nextFrame = previous;
+
+        while (running) {
+            long now = System.nanoTime();
+            long frameNanos = now - previous;
+            long elapsed = frameNanos;
+            previous = now;
+
+            long skipped = 0;
+            if (elapsed > MAX_FRAME_NANOS) {
+                skipped = (elapsed - MAX_FRAME_NANOS) / STEP_NANOS;
+                elapsed = MAX_FRAME_NANOS;
+            }
+            accumulator += elapsed;
+
+            int stepped = 0;
+            while (accumulator >= STEP_NANOS) {
+                try {
+                    update.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                accumulator -= STEP_NANOS;
+                stepped++;
+            }
+            stats.recordSteps(stepped, skipped);
+
+            try {
+                render.accept((double) accumulator / STEP_NANOS);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            long period = framePeriod();
+            stats.recordFrame(frameNanos, period);
+            if (period > 0) {
+                nextFrame += period;
+                long late = System.nanoTime() - nextFrame;
+                if (late > period) {
+                    // Too far behind to catch up smoothly: start pacing afresh
+                    nextFrame = System.nanoTime();
+                } else {
+                    waitUntil(nextFrame);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private long framePeriod() {
+        int fps = targetFps;
+        return fps > 0 ? 1_000_000_000L / fps : 0;
+    }
+
+    // 60, 120 or 144 to match the display; 0 for unpaced
+    public void setTargetFps(int targetFps) {
+        if (targetFps < 0) {
+            throw new IllegalArgumentException("targetFps must not be negative");
+        }
+        this.targetFps = targetFps;
+    }
+
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    public FrameStats getStats() {
+        return stats;
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
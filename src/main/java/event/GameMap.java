@@ -2,6 +2,7 @@ package event;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
 
@@ -19,6 +20,14 @@ public class GameMap {
     private final Color SHADOW_COLOR = new Color(0, 0, 0, 50);
     private final Color VENT_COLOR = new Color(100, 100, 100);
 
+    // Floor, walls and room furniture pre-rendered at map scale. Redrawing
+    // them took thousands of fills a frame; now it takes one blit, and the
+    // layer is only re-rendered when a room's lights or layout change.
+    private BufferedImage staticLayer;
+    private long staticLayerStamp = -1;
+    private int layoutRevision;
+    private long staticLayerRenders;
+
     public GameMap() {
         rooms = new ArrayList<>();
         vents = new ArrayList<>();
@@ -253,41 +262,102 @@ public class GameMap {
         spawnPoints.put("ghost", new Point2D.Double(1000, 400)); // Center of map
     }
 
-    public void draw(Graphics2D g2d) {
-        // Draw background
-        g2d.setColor(FLOOR_COLOR);
-        g2d.fillRect(0, 0, mapWidth, mapHeight);
+    // Draws what intersects view, a world-space rectangle, and counts the
+    // rooms, vents and doors it skipped
+    public void draw(Graphics2D g2d, Rectangle2D view, CullingStats stats) {
+        long stamp = staticStamp();
+        if (staticLayer == null || stamp != staticLayerStamp) {
+            renderStaticLayer(g2d.getDeviceConfiguration());
+            staticLayerStamp = stamp;
+        }
+
+        // Blit only the visible part of the layer
+        int left = Math.max(0, (int) Math.floor(view.getMinX()));
+        int top = Math.max(0, (int) Math.floor(view.getMinY()));
+        int right = Math.min(mapWidth, (int) Math.ceil(view.getMaxX()));
+        int bottom = Math.min(mapHeight, (int) Math.ceil(view.getMaxY()));
+        if (left < right && top < bottom) {
+            g2d.drawImage(staticLayer, left, top, right, bottom, left, top, right, bottom, null);
+        }
 
-        // Draw rooms
+        // Animated room effects go over the layer
         for (Room room : rooms) {
-            // Draw room shadow
-            g2d.setColor(SHADOW_COLOR);
-            Rectangle2D bounds = room.getBounds();
-            g2d.fill(new Rectangle2D.Double(
-                    bounds.getX() + 5,
-                    bounds.getY() + 5,
-                    bounds.getWidth(),
-                    bounds.getHeight()
-            ));
-
-            // Draw room
-            g2d.setColor(WALL_COLOR);
-            g2d.fill(bounds);
-
-            // Draw room features
-            room.drawFeatures(g2d);
+            if (stats.count(CullingStats.Kind.ROOM, view.intersects(room.getBounds()))) {
+                room.drawOverlays(g2d);
+            }
         }
 
-        // Draw vents
+        // Vents and doors animate, so they are drawn live
         g2d.setColor(VENT_COLOR);
         for (Vent vent : vents) {
-            vent.draw(g2d);
+            if (stats.count(CullingStats.Kind.VENT, view.intersects(vent.getBounds()))) {
+                vent.draw(g2d);
+            }
         }
 
         // Draw doors
         for (Door door : doors) {
-            door.draw(g2d);
+            if (stats.count(CullingStats.Kind.DOOR, view.intersects(door.getBounds()))) {
+                door.draw(g2d);
+            }
+        }
+    }
+
+    // Room revisions only ever grow, so their sum changes with any of them
+    private long staticStamp() {
+        long stamp = layoutRevision;
+        for (Room room : rooms) {
+            stamp += room.getRevision();
         }
+        return stamp;
+    }
+
+    private void renderStaticLayer(GraphicsConfiguration config) {
+        if (staticLayer == null) {
+            staticLayer = ImageCache.createCompatible(config, mapWidth, mapHeight, Transparency.OPAQUE);
+        }
+
+        Graphics2D g2d = staticLayer.createGraphics();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            // Draw background
+            g2d.setColor(FLOOR_COLOR);
+            g2d.fillRect(0, 0, mapWidth, mapHeight);
+
+            // Draw rooms
+            for (Room room : rooms) {
+                // Draw room shadow
+                g2d.setColor(SHADOW_COLOR);
+                Rectangle2D bounds = room.getBounds();
+                g2d.fill(new Rectangle2D.Double(
+                        bounds.getX() + 5,
+                        bounds.getY() + 5,
+                        bounds.getWidth(),
+                        bounds.getHeight()
+                ));
+
+                // Draw room
+                g2d.setColor(WALL_COLOR);
+                g2d.fill(bounds);
+
+                // Draw room features
+                room.drawStatic(g2d);
+            }
+        } finally {
+            g2d.dispose();
+        }
+        staticLayerRenders++;
+    }
+
+    // Forces the pre-rendered layer to be redrawn, e.g. after rooms were
+    // added or changed through getRooms()
+    public void invalidate() {
+        layoutRevision++;
+    }
+
+    public long getStaticLayerRenders() {
+        return staticLayerRenders;
     }
 
     public Room getRoomAt(Point2D.Double position) {
@@ -2,9 +2,12 @@ package event;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.geom.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -17,21 +20,48 @@ public class GamePanel extends JPanel {
     private GameMap gameMap;
     private Camera camera;
     private List<Task> tasks;
+    private MovementPredictor movementPredictor;
+    private RemotePlayerInterpolator interpolator;
+    private ReplayEngine replay; // set when showing a recorded game instead of a live one
 
     // Lighting and FOV
     private boolean isEmergencyLighting;
     private double visionRadius;
     private float lightingAlpha;
+    private boolean lightsSabotaged;
+    // The pre-rendered darkness drawLighting composites, null for none;
+    // rechosen when the lighting state changes and scaled to the zoom on draw
+    private LightingMask visionMask;
 
     // Visual effects
     private List<ParticleEffect> particles;
     private List<Animation> animations;
     private ImageCache imageCache;
 
+    // Culling: the world area on screen this frame, grown by CULL_MARGIN so
+    // effects that reach past their object's position are not cut off
+    private static final double CULL_MARGIN = 40;
+    private static final Font ROOM_NAME_FONT = new Font("Arial", Font.BOLD, 20);
+    private static final Color ROOM_NAME_COLOR = new Color(200, 200, 200, 100);
+    private final Rectangle2D.Double view = new Rectangle2D.Double();
+    private final CullingStats cullingStats = new CullingStats();
+
     // Double buffering
     private BufferedImage backBuffer;
     private Graphics2D backBufferGraphics;
 
+    // Active rendering: the game loop draws straight into a page-flipped
+    // canvas covering the panel, and Swing repaints are ignored
+    private Canvas canvas;
+    private BufferStrategy strategy;
+    private FrameStats frameStats;
+    private boolean showFrameStats;
+    private static final Font FRAME_STATS_FONT = new Font("Monospaced", Font.PLAIN, 12);
+
+    // Where the local player is drawn in the current frame, between the
+    // last two simulation steps
+    private Point2D.Double localShown;
+
     public GamePanel(Player localPlayer, List<Player> players) {
         this.localPlayer = localPlayer;
         // Use CopyOnWriteArrayList for thread safety
@@ -48,10 +78,14 @@ public class GamePanel extends JPanel {
         setFocusable(true);
 
         // Initialize vision settings
-        visionRadius = 200.0;
+        visionRadius = Player.VISION_RADIUS;
         lightingAlpha = 0.7f;
         isEmergencyLighting = false;
 
+        // Render both vision masks up front so sabotage never stalls a frame
+        LightingMask.of(Player.LIGHTS_OUT_VISION_RADIUS, lightingAlpha);
+        updateVisionMask();
+
         setupTasks();
     }
 
@@ -68,6 +102,9 @@ public class GamePanel extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
+        // The game loop draws the canvas itself
+        if (canvas != null) return;
+
         // Create back buffer if needed
         if (backBuffer == null || backBuffer.getWidth() != getWidth()
                 || backBuffer.getHeight() != getHeight()) {
@@ -80,41 +117,100 @@ public class GamePanel extends JPanel {
             );
         }
 
-        // Clear back buffer
-        backBufferGraphics.setColor(getBackground());
-        backBufferGraphics.fillRect(0, 0, getWidth(), getHeight());
+        render(backBufferGraphics, 1.0);
+
+        // Draw back buffer to screen
+        g.drawImage(backBuffer, 0, 0, null);
+    }
+
+    // Swaps the Swing painting above for a canvas the game loop draws with
+    // renderFrame. Call on the EDT before the loop starts.
+    public void enableActiveRendering() {
+        canvas = new Canvas();
+        canvas.setIgnoreRepaint(true);
+        canvas.setFocusable(false); // keys keep going to the window
+        canvas.setBackground(getBackground());
+        setIgnoreRepaint(true);
+        setLayout(new BorderLayout());
+        add(canvas, BorderLayout.CENTER);
+        revalidate();
+    }
+
+    // Game loop thread: draws one frame alpha of the way between the last two
+    // simulation steps and flips it onto the screen
+    public void renderFrame(double alpha) {
+        if (canvas == null || !canvas.isDisplayable() || canvas.getWidth() <= 0) return;
+
+        if (strategy == null) {
+            try {
+                // Page flipping where the platform supports it
+                canvas.createBufferStrategy(2, new BufferCapabilities(
+                        new ImageCapabilities(true), new ImageCapabilities(true),
+                        BufferCapabilities.FlipContents.UNDEFINED));
+            } catch (AWTException e) {
+                canvas.createBufferStrategy(2);
+            }
+            strategy = canvas.getBufferStrategy();
+        }
+
+        // Contents can be lost or restored by the system at any time; redraw until a frame sticks
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    render(g2d, alpha);
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private void render(Graphics2D g2d, double alpha) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        // Apply camera transform
-        AffineTransform oldTransform = backBufferGraphics.getTransform();
-        camera.apply(backBufferGraphics);
+        // Clear the frame
+        g2d.setColor(getBackground());
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+
+        // Apply camera transform, following the local player as drawn
+        AffineTransform oldTransform = g2d.getTransform();
+        localShown = movementPredictor != null
+                ? movementPredictor.getDisplayPosition(alpha)
+                : localPlayer.getPosition();
+        camera.apply(g2d, localShown.x, localShown.y);
+        camera.getViewBounds(getWidth(), getHeight(), CULL_MARGIN, view);
+        cullingStats.beginFrame();
 
         // Draw game elements
-        drawMap(backBufferGraphics);
-        drawTasks(backBufferGraphics);
-        drawPlayers(backBufferGraphics);
-        drawParticles(backBufferGraphics);
-        drawAnimations(backBufferGraphics);
+        drawMap(g2d);
+        drawTasks(g2d);
+        drawPlayers(g2d);
+        drawParticles(g2d);
+        drawAnimations(g2d);
+        cullingStats.endFrame();
 
         // Reset transform for lighting overlay
-        backBufferGraphics.setTransform(oldTransform);
+        g2d.setTransform(oldTransform);
 
         // Draw lighting
-        drawLighting(backBufferGraphics);
+        drawLighting(g2d);
 
         // Draw HUD elements
-        drawHUD(backBufferGraphics);
-
-        // Draw back buffer to screen
-        g.drawImage(backBuffer, 0, 0, null);
+        drawHUD(g2d);
     }
 
     private void drawMap(Graphics2D g2d) {
-        gameMap.draw(g2d);
+        gameMap.draw(g2d, view, cullingStats);
 
         // Draw room names
-        g2d.setColor(new Color(200, 200, 200, 100));
-        g2d.setFont(new Font("Arial", Font.BOLD, 20));
+        g2d.setColor(ROOM_NAME_COLOR);
+        g2d.setFont(ROOM_NAME_FONT);
         for (Room room : gameMap.getRooms()) {
+            if (!view.intersects(room.getBounds())) continue;
+
             g2d.drawString(room.getName(),
                     (int) (room.getBounds().getCenterX() - g2d.getFontMetrics().stringWidth(room.getName()) / 2),
                     (int) room.getBounds().getCenterY());
@@ -123,7 +219,8 @@ public class GamePanel extends JPanel {
 
     private void drawTasks(Graphics2D g2d) {
         for (Task task : tasks) {
-            if (!task.isCompleted()) {
+            if (!task.isCompleted()
+                    && cullingStats.count(CullingStats.Kind.TASK, view.contains(task.getPosition()))) {
                 // Draw task marker
                 g2d.setColor(new Color(255, 255, 0, 150));
                 double x = task.getPosition().getX();
@@ -146,18 +243,45 @@ public class GamePanel extends JPanel {
     }
 
     private void drawPlayers(Graphics2D g2d) {
+        // A replay's roster is whatever the replayed state holds at this point
+        if (replay != null) {
+            players.clear();
+            players.addAll(replay.getState().getPlayers().values());
+        }
+
+        // Remote players are drawn slightly in the past, between received positions
+        if (interpolator != null) {
+            interpolator.applyTo(players, localPlayer);
+        }
+
         // Sort players by Y position for proper layering
         players.sort((p1, p2) -> Double.compare(p1.getY(), p2.getY()));
 
         for (Player player : players) {
-            player.draw(g2d);
+            // The local player is always centered, whatever its stored position
+            if (player != localPlayer && !cullingStats.count(CullingStats.Kind.PLAYER, player.isVisibleIn(view))) {
+                continue;
+            }
 
-            // Draw interaction range indicator for local player
+            if (player == localPlayer && movementPredictor != null) {
+                // Draw where prediction says, including the fading correction
+                Point2D.Double shown = localShown;
+                double dx = shown.x - player.getX();
+                double dy = shown.y - player.getY();
+                g2d.translate(dx, dy);
+                player.draw(g2d);
+                g2d.translate(-dx, -dy);
+            } else {
+                player.draw(g2d);
+            }
+
+            // Draw interaction range indicator for local player, around the
+            // same interpolated position as its sprite
             if (player == localPlayer && !player.isDead()) {
                 g2d.setColor(new Color(255, 255, 255, 30));
                 g2d.draw(new Ellipse2D.Double(
-                        player.getX() - 25,
-                        player.getY() - 25,
+                        localShown.x - 25,
+                        localShown.y - 25,
                         50,
                         50
                 ));
@@ -166,42 +290,28 @@ public class GamePanel extends JPanel {
     }
 
     private void drawParticles(Graphics2D g2d) {
-        particles.removeIf(ParticleEffect::isFinished);
         for (ParticleEffect particle : particles) {
-            particle.update();
-            particle.draw(g2d);
+            // Off-screen particles keep moving, they are just not drawn
+            if (cullingStats.count(CullingStats.Kind.PARTICLE, view.contains(particle.getX(), particle.getY()))) {
+                particle.draw(g2d);
+            }
         }
     }
 
     private void drawAnimations(Graphics2D g2d) {
-        animations.removeIf(Animation::isFinished);
         for (Animation animation : animations) {
-            animation.update();
-            animation.draw(g2d);
+            if (cullingStats.count(CullingStats.Kind.ANIMATION, animation.isVisibleIn(view))) {
+                animation.draw(g2d);
+            }
         }
     }
 
     private void drawLighting(Graphics2D g2d) {
-        if (!isEmergencyLighting) {
-            // Create radial gradient for player vision
-            Point2D center = camera.worldToScreen(localPlayer.getPosition());
-            float[] dist = {0.0f, 0.5f, 1.0f};
-            Color[] colors = {
-                    new Color(0, 0, 0, 0),
-                    new Color(0, 0, 0, (int)(lightingAlpha * 128)),
-                    new Color(0, 0, 0, (int)(lightingAlpha * 255))
-            };
-
-            RadialGradientPaint gradient = new RadialGradientPaint(
-                    (float)center.getX(),
-                    (float)center.getY(),
-                    (float)visionRadius,
-                    dist,
-                    colors
-            );
-
-            g2d.setPaint(gradient);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
+        LightingMask mask = visionMask;
+        if (mask != null) {
+            // Player vision: one blit of the cached gradient around the player
+            Point2D center = camera.worldToScreen(localShown);
+            mask.draw(g2d, center.getX(), center.getY(), camera.getZoom(), getWidth(), getHeight());
         }
     }
 
@@ -221,6 +331,48 @@ public class GamePanel extends JPanel {
 
         // Draw emergency button cooldown
         drawEmergencyButton(g2d);
+
+        if (replay != null) {
+            drawReplayTimeline(g2d);
+        }
+
+        if (showFrameStats && frameStats != null) {
+            g2d.setFont(FRAME_STATS_FONT);
+            g2d.setColor(Color.GREEN);
+            g2d.drawString(frameStats.toString(), 10, 20);
+            g2d.drawString(cullingStats.toString(), 10, 36);
+        }
+    }
+
+    // Progress bar along the bottom with a mark per kill (red) and meeting (white)
+    private void drawReplayTimeline(Graphics2D g2d) {
+        Rectangle bar = timelineBounds();
+        g2d.setColor(new Color(0, 0, 0, 160));
+        g2d.fill(bar);
+
+        long start = replay.getStartTime();
+        double span = Math.max(1, replay.getEndTime() - start);
+        int played = (int) ((replay.getCurrentTime() - start) / span * bar.width);
+        g2d.setColor(new Color(80, 160, 255, 180));
+        g2d.fillRect(bar.x, bar.y, played, bar.height);
+
+        for (int i = 0; i < replay.getEventCount(); i++) {
+            EventJournal.Entry event = replay.getEvent(i);
+            if (event.kind() != EventJournal.KILL && event.kind() != EventJournal.EMERGENCY_MEETING) continue;
+
+            int x = bar.x + (int) ((event.time() - start) / span * bar.width);
+            g2d.setColor(event.kind() == EventJournal.KILL ? Color.RED : Color.WHITE);
+            g2d.drawLine(x, bar.y, x, bar.y + bar.height);
+        }
+
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(String.format("%d:%02d  event %d/%d",
+                (replay.getCurrentTime() - start) / 60000, (replay.getCurrentTime() - start) / 1000 % 60,
+                replay.getPosition(), replay.getEventCount()), bar.x + 4, bar.y - 4);
+    }
+
+    private Rectangle timelineBounds() {
+        return new Rectangle(60, getHeight() - 30, getWidth() - 120, 16);
     }
 
     private void drawMiniMap(Graphics2D g2d) {
@@ -324,6 +476,19 @@ public class GamePanel extends JPanel {
         }
     }
 
+    // One fixed simulation step of the effects; rendering only draws them, so
+    // a frame drawn twice or at a higher rate does not speed them up
+    public void updateEffects() {
+        particles.removeIf(ParticleEffect::isFinished);
+        for (ParticleEffect particle : particles) {
+            particle.update();
+        }
+        animations.removeIf(Animation::isFinished);
+        for (Animation animation : animations) {
+            animation.update();
+        }
+    }
+
     public void addParticleEffect(ParticleEffect effect) {
         if (particles != null) {
             particles.add(effect);
@@ -336,8 +501,79 @@ public class GamePanel extends JPanel {
         }
     }
 
+    public void setMovementPredictor(MovementPredictor movementPredictor) {
+        this.movementPredictor = movementPredictor;
+    }
+
+    // Shows a recorded game; clicking or dragging on the timeline seeks
+    public void setReplay(ReplayEngine replay) {
+        this.replay = replay;
+        MouseAdapter scrub = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                seekTo(e);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                seekTo(e);
+            }
+        };
+        addMouseListener(scrub);
+        addMouseMotionListener(scrub);
+    }
+
+    private void seekTo(MouseEvent e) {
+        Rectangle bar = timelineBounds();
+        if (e.getY() < bar.y - 10) return;
+
+        double fraction = Math.max(0, Math.min(1, (e.getX() - bar.x) / (double) bar.width));
+        replay.seek(replay.getStartTime() + Math.round(fraction * (replay.getEndTime() - replay.getStartTime())));
+        repaint();
+    }
+
+    public void setInterpolator(RemotePlayerInterpolator interpolator) {
+        this.interpolator = interpolator;
+    }
+
+    public void setFrameStats(FrameStats frameStats) {
+        this.frameStats = frameStats;
+    }
+
+    public void toggleFrameStats() {
+        showFrameStats = !showFrameStats;
+    }
+
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public CullingStats getCullingStats() {
+        return cullingStats;
+    }
+
+    // Lights sabotage shrinks crewmate vision; impostors keep theirs
+    private void updateVisionMask() {
+        if (isEmergencyLighting) {
+            visionMask = null;
+            return;
+        }
+
+        double radius = lightsSabotaged && !localPlayer.isImpostor()
+                ? Player.LIGHTS_OUT_VISION_RADIUS
+                : visionRadius;
+        visionMask = LightingMask.of(radius, lightingAlpha);
+    }
+
     public void setEmergencyLighting(boolean emergency) {
         this.isEmergencyLighting = emergency;
+        updateVisionMask();
+        repaint();
+    }
+
+    public void setLightsSabotaged(boolean sabotaged) {
+        this.lightsSabotaged = sabotaged;
+        updateVisionMask();
         repaint();
     }
 
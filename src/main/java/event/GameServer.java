@@ -1,6 +1,5 @@
 package event;
 
-import java.awt.geom.Point2D;
 import java.net.*;
 import java.io.*;
 import java.util.*;
@@ -12,34 +11,56 @@ import java.util.HashMap;
 
 public class GameServer {
     private ServerSocket serverSocket;
-    private List<ClientHandler> clients;
-    private Map<String, Player> players;
-    private GameState gameState;
+    private NioTransport nioTransport;
+    private DatagramTransport datagramTransport;
+    private ServerConfig config;
+    private List<ClientHandler> clients;   // every connection, across all lobbies
+    private LobbyManager lobbyManager;
+    private ConnectionManager connectionManager;
+    private SessionRegistry sessions;
     private boolean isRunning;
     private ExecutorService clientExecutor;
     private MessageHandler messageHandler;
+    private MessageCodecs codecs;
     private Gson gson;
 
-    // Game settings
-    private static final int MAX_PLAYERS = 10;
-    private static final int MIN_PLAYERS = 4;
-    private static final int IMPOSTOR_COUNT = 2;
-    private static final long GAME_START_DELAY = 5000; // 5 seconds
-
     public GameServer(int port) {
+        this(port, ServerConfig.defaults());
+    }
+
+    public GameServer(int port, ServerConfig config) {
+        this.config = config;
         this.clients = new CopyOnWriteArrayList<>();
-        this.players = new ConcurrentHashMap<>();
-        this.gameState = new GameState();
         this.gson = new Gson();
-        this.clientExecutor = Executors.newCachedThreadPool();
+        this.codecs = new MessageCodecs();
+        this.lobbyManager = new LobbyManager(config);
+        this.clientExecutor = config.getExecutorStrategy().newClientExecutor();
+        this.connectionManager = new ConnectionManager(clients);
+        this.sessions = new SessionRegistry(connectionManager, config.getSessionGraceMillis());
 
         initializeServer(port);
     }
 
     private void initializeServer(int port) {
         try {
-            serverSocket = new ServerSocket(port);
             isRunning = true;
+            connectionManager.start();
+
+            if (config.isDatagramEnabled()) {
+                datagramTransport = new DatagramTransport(this, config.getDatagramPort());
+                datagramTransport.start(config.getExecutorStrategy());
+                System.out.println("Position updates over UDP on port " + datagramTransport.getLocalPort());
+            }
+
+            if (config.getTransportMode() == ServerConfig.TransportMode.NIO) {
+                nioTransport = new NioTransport(this, port, config.getIoThreads());
+                nioTransport.start();
+                System.out.println("Server started on port " + port
+                        + " (NIO, " + config.getIoThreads() + " event loops)");
+                return;
+            }
+
+            serverSocket = new ServerSocket(port);
             System.out.println("Server started on port " + port);
 
             // Start accepting clients
@@ -51,7 +72,7 @@ public class GameServer {
     }
 
     private void startAcceptingClients() {
-        new Thread(() -> {
+        config.getExecutorStrategy().startThread("game-server-acceptor", () -> {
             while (isRunning) {
                 try {
                     Socket clientSocket = serverSocket.accept();
@@ -62,11 +83,11 @@ public class GameServer {
                     }
                 }
             }
-        }).start();
+        });
     }
 
     private void handleNewClient(Socket clientSocket) {
-        if (clients.size() >= MAX_PLAYERS) {
+        if (clients.size() >= config.getMaxConnections()) {
             rejectClient(clientSocket, "Server is full");
             return;
         }
@@ -74,9 +95,22 @@ public class GameServer {
         ClientHandler handler = new ClientHandler(clientSocket, this);
         clients.add(handler);
         clientExecutor.execute(handler);
+    }
+
+    // Called on an NIO event loop; returns null if the client was rejected
+    ClientHandler acceptNioClient(NioTransport.Connection connection) {
+        if (clients.size() >= config.getMaxConnections()) {
+            NetworkMessage rejectMessage = new NetworkMessage(
+                    NetworkMessage.Type.ERROR,
+                    "Server is full"
+            );
+            connection.write(EncodedMessage.of(rejectMessage).asBuffer(codecs.json()));
+            return null;
+        }
 
-        // Notify all clients about new player
-        broadcastPlayerList();
+        ClientHandler handler = new ClientHandler(connection, this);
+        clients.add(handler);
+        return handler;
     }
 
     private void rejectClient(Socket clientSocket, String reason) {
@@ -93,6 +127,8 @@ public class GameServer {
         }
     }
 
+    // Shared front end for every lobby: CONNECT picks the lobby, everything
+    // after that goes to the lobby the client joined
     public void handleMessage(ClientHandler client, NetworkMessage message) {
         switch (message.getType()) {
             case CONNECT:
@@ -101,238 +137,123 @@ public class GameServer {
             case DISCONNECT:
                 handleDisconnect(client);
                 break;
-            case PLAYER_UPDATE:
-                handlePlayerUpdate(message);
-                break;
-            case CHAT:
-                handleChat(message);
-                break;
-            case EMERGENCY_MEETING:
-                handleEmergencyMeeting(message);
-                break;
-            case VOTE:
-                handleVote(message);
-                break;
-            case TASK_COMPLETE:
-                handleTaskComplete(message);
-                break;
-            case KILL:
-                handleKill(message);
+            case STATE_ACK:
+                // Malformed acks are ignored rather than failing the transport thread
+                if (message.getData() instanceof Long tick) {
+                    client.acknowledgeSnapshot(tick);
+                }
                 break;
-            case SABOTAGE:
-                handleSabotage(message);
+            default:
+                Lobby lobby = client.getLobby();
+                if (lobby != null) {
+                    lobby.handleMessage(client, message);
+                }
                 break;
         }
     }
 
     private void handleConnect(ClientHandler client, NetworkMessage message) {
-        ConnectionData data = (ConnectionData) message.getData();
-        Player newPlayer = new Player(data.playerName, false);
-        players.put(data.playerId, newPlayer);
+        if (client.getLobby() != null) return;
 
-        // Send current game state to new player
-        client.sendMessage(new NetworkMessage(
-                NetworkMessage.Type.GAME_STATE,
-                gameState
-        ));
-
-        // Check if we can start the game
-        checkGameStart();
-    }
-
-    private void handleDisconnect(ClientHandler client) {
-        clients.remove(client);
-        players.remove(client.getPlayerId());
-        broadcastPlayerList();
-
-        // Check if game should end due to too few players
-        checkGameEnd();
-    }
+        ConnectionData data = (ConnectionData) message.getData();
+        if (client.isResumed() && resumeSession(client, data)) return;
 
-    private void handlePlayerUpdate(NetworkMessage message) {
-        PlayerUpdateData data = (PlayerUpdateData) message.getData();
-        Player player = players.get(data.playerId);
-        if (player != null) {
-            player.updateFromData(data);
-            broadcastToAll(message);
+        Lobby lobby = lobbyManager.join(client, data);
+        if (lobby == null) {
+            client.sendMessage(new NetworkMessage(
+                    NetworkMessage.Type.ERROR,
+                    data.lobbyId != null ? "Lobby " + data.lobbyId + " is not available" : "No lobby available"
+            ));
+            return;
         }
-    }
-
-    private void handleChat(NetworkMessage message) {
-        ChatMessage chatMessage = (ChatMessage) message.getData();
-
-        // Filter messages based on type
-        List<ClientHandler> recipients = clients.stream()
-                .filter(client -> canReceiveMessage(client, chatMessage))
-                .toList();
-
-        broadcastToClients(message, recipients);
-    }
 
-    private void handleEmergencyMeeting(NetworkMessage message) {
-        EmergencyData data = (EmergencyData) message.getData();
-        gameState.startEmergencyMeeting(data);
-        broadcastToAll(message);
+        client.setLobby(lobby);
+        lobby.handleMessage(client, message);
     }
 
-    private void handleVote(NetworkMessage message) {
-        VoteData data = (VoteData) message.getData();
-        gameState.registerVote(data);
-        broadcastToAll(message);
-
-        // Check if voting is complete
-        if (gameState.isVotingComplete()) {
-            handleVotingResults();
+    // The reconnected client takes over its old connection's place in the lobby
+    // and gets a delta from the last snapshot it holds, or a full one if that
+    // tick is too old. Nothing in the game is reset.
+    private boolean resumeSession(ClientHandler client, ConnectionData data) {
+        ClientHandler previous = sessions.previousOf(client.getSession());
+        Lobby lobby = previous != null ? previous.getLobby() : null;
+        if (lobby == null || !lobbyManager.rejoin(previous, client, lobby)) {
+            return false;
         }
-    }
 
-    private void handleTaskComplete(NetworkMessage message) {
-        TaskData data = (TaskData) message.getData();
-        gameState.completeTask(data);
-        broadcastToAll(message);
-
-        // Check if all tasks are complete
-        if (gameState.areAllTasksComplete()) {
-            handleCrewmateVictory();
-        }
+        client.setLobby(lobby);
+        client.acknowledgeSnapshot(data.resumeTick);
+        // The old connection may still look open if the client dropped silently
+        previous.stop();
+        lobby.onPlayerResumed();
+        return true;
     }
 
-    private void handleKill(NetworkMessage message) {
-        KillData data = (KillData) message.getData();
-        gameState.registerKill(data);
-        broadcastToAll(message);
-
-        // Check win conditions
-        checkWinConditions();
-    }
+    // A dropped connection keeps its player in the game for the grace window;
+    // only a DISCONNECT from the client itself, or the window running out,
+    // removes the player
+    private void handleDisconnect(ClientHandler client) {
+        clients.remove(client);
 
-    private void handleSabotage(NetworkMessage message) {
-        SabotageData data = (SabotageData) message.getData();
-        gameState.triggerSabotage(data);
-        broadcastToAll(message);
-    }
+        Lobby lobby = client.getLobby();
+        if (lobby == null) return;
 
-    private void checkGameStart() {
-        if (players.size() >= MIN_PLAYERS && !gameState.isGameInProgress()) {
-            startGame();
+        SessionRegistry.Session session = client.getSession();
+        if (session != null && !client.isLeaving()) {
+            sessions.hold(session, client, () -> lobbyManager.leave(client, lobby));
+            return;
         }
-    }
-
-    private void startGame() {
-        // Assign impostors
-        assignImpostors();
-
-        // Assign tasks
-        assignTasks();
-
-        // Update game state
-        gameState.startGame();
-
-        // Notify all players
-        broadcastToAll(new NetworkMessage(
-                NetworkMessage.Type.GAME_STATE,
-                gameState
-        ));
-    }
-
-    private void assignImpostors() {
-        List<String> playerIds = new ArrayList<>(players.keySet());
-        Collections.shuffle(playerIds);
-
-        for (int i = 0; i < IMPOSTOR_COUNT && i < playerIds.size(); i++) {
-            Player player = players.get(playerIds.get(i));
-            player.setImpostor(true);
+        if (session != null && !sessions.close(session, client)) {
+            return; // a resumed connection already owns the slot
         }
+        lobbyManager.leave(client, lobby);
     }
 
-    private void assignTasks() {
-        for (Player player : players.values()) {
-            if (!player.isImpostor()) {
-                List<Task> tasks = generateTaskList();
-                player.assignTasks(tasks);
-            }
-        }
-    }
-
-    private List<Task> generateTaskList() {
-        // Generate a balanced list of tasks
-        List<Task> tasks = new ArrayList<>();
-        tasks.add(new Task("Fix Wiring", new Point2D.Double(0, 0), TaskType.WIRES));
-        // Add more tasks based on game balance
-        return tasks;
+    public ServerConfig getConfig() {
+        return config;
     }
 
-    private void checkWinConditions() {
-        if (gameState.shouldImpostorsWin()) {
-            handleImpostorVictory();
-        } else if (gameState.shouldCrewmatesWin()) {
-            handleCrewmateVictory();
+    // Queued frames per connected player, for spotting clients that fall behind
+    public Map<String, Integer> getOutboundQueueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        for (ClientHandler client : clients) {
+            if (client.getPlayerId() != null) {
+                depths.put(client.getPlayerId(), client.getOutboundQueue().depth());
+            }
         }
+        return depths;
     }
 
-    private void handleImpostorVictory() {
-        gameState.endGame(GameState.GameEndReason.IMPOSTOR_VICTORY);
-        broadcastGameEnd("Impostors Win!");
+    public SessionRegistry getSessions() {
+        return sessions;
     }
 
-    private void handleCrewmateVictory() {
-        gameState.endGame(GameState.GameEndReason.CREWMATE_VICTORY);
-        broadcastGameEnd("Crewmates Win!");
+    // Null unless the server was configured with a datagram port
+    public DatagramTransport getDatagramTransport() {
+        return datagramTransport;
     }
 
-    private void broadcastGameEnd(String message) {
-        NetworkMessage endMessage = new NetworkMessage(
-                NetworkMessage.Type.GAME_STATE,
-                new GameEndData(message)
-        );
-        broadcastToAll(endMessage);
+    public LobbyManager getLobbyManager() {
+        return lobbyManager;
     }
 
-    private void checkGameEnd() {
-        if (players.size() < MIN_PLAYERS && gameState.isGameInProgress()) {
-            // End game due to insufficient players
-            gameState.endGame(GameState.GameEndReason.INSUFFICIENT_PLAYERS);
-            broadcastGameEnd("Game ended: Too few players");
-        }
-    }
-
-    private boolean canReceiveMessage(ClientHandler client, ChatMessage message) {
-        Player player = players.get(client.getPlayerId());
-        if (player == null) return false;
-
-        return switch (message.type) {
-            case GLOBAL -> true;
-            case IMPOSTOR -> player.isImpostor();
-            case GHOST -> player.isDead();
-            case SYSTEM -> true;
-            default -> false;
-        };
+    public MessageCodecs getCodecs() {
+        return codecs;
     }
 
-    public void broadcastToAll(NetworkMessage message) {
-        for (ClientHandler client : clients) {
-            client.sendMessage(message);
-        }
+    public int getClientCount() {
+        return clients.size();
     }
 
-    private void broadcastToClients(NetworkMessage message, List<ClientHandler> recipients) {
-        for (ClientHandler client : recipients) {
-            client.sendMessage(message);
+    public int getLocalPort() {
+        if (nioTransport != null) {
+            return nioTransport.getLocalPort();
         }
-    }
-
-    private void broadcastPlayerList() {
-        NetworkMessage message = new NetworkMessage(
-                NetworkMessage.Type.PLAYER_LIST,
-                new ArrayList<>(players.values())
-        );
-        broadcastToAll(message);
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
     }
 
     public void removeClient(ClientHandler client) {
-        clients.remove(client);
-        players.remove(client.getPlayerId());
-        broadcastPlayerList();
+        handleDisconnect(client);
     }
 
     public void shutdown() {
@@ -345,6 +266,15 @@ public class GameServer {
 
         // Shutdown executor
         clientExecutor.shutdown();
+        lobbyManager.shutdown();
+        connectionManager.shutdown();
+
+        if (nioTransport != null) {
+            nioTransport.shutdown();
+        }
+        if (datagramTransport != null) {
+            datagramTransport.shutdown();
+        }
 
         // Close server socket
         try {
@@ -373,6 +303,38 @@ public class GameServer {
                 System.err.println("Invalid port number. Using default: 8080");
             }
         }
-        new GameServer(port);
+
+        ServerConfig.Builder config = new ServerConfig.Builder();
+        LobbySettings.Builder lobbySettings = new LobbySettings.Builder();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--nio")) {
+                config.transportMode(ServerConfig.TransportMode.NIO);
+            } else if (args[i].startsWith("--executor=")) {
+                config.executorStrategy(ExecutorStrategy.fromName(args[i].substring("--executor=".length())));
+            } else if (args[i].startsWith("--io-threads=")) {
+                config.ioThreads(Integer.parseInt(args[i].substring("--io-threads=".length())));
+            } else if (args[i].startsWith("--tick-rate=")) {
+                lobbySettings.tickRate(Integer.parseInt(args[i].substring("--tick-rate=".length())));
+            } else if (args[i].startsWith("--overflow=")) {
+                String policy = args[i].substring("--overflow=".length()).replace('-', '_');
+                config.overflowPolicy(ServerConfig.OverflowPolicy.valueOf(policy.toUpperCase()));
+            } else if (args[i].startsWith("--queue-capacity=")) {
+                config.outboundQueueCapacity(Integer.parseInt(args[i].substring("--queue-capacity=".length())));
+            } else if (args[i].startsWith("--flush-interval=")) {
+                config.flushIntervalMillis(Long.parseLong(args[i].substring("--flush-interval=".length())));
+            } else if (args[i].startsWith("--lobby-workers=")) {
+                config.lobbyWorkers(Integer.parseInt(args[i].substring("--lobby-workers=".length())));
+            } else if (args[i].startsWith("--max-lobbies=")) {
+                config.maxLobbies(Integer.parseInt(args[i].substring("--max-lobbies=".length())));
+            } else if (args[i].equals("--udp")) {
+                config.datagramPort(port);
+            } else if (args[i].startsWith("--journal=")) {
+                config.journalDirectory(args[i].substring("--journal=".length()));
+            } else if (args[i].startsWith("--udp-port=")) {
+                config.datagramPort(Integer.parseInt(args[i].substring("--udp-port=".length())));
+            }
+        }
+        config.lobbySettings(lobbySettings.build());
+        new GameServer(port, config.build());
     }
 }
\ No newline at end of file
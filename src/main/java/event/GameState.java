@@ -2,6 +2,7 @@ package event;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.LongSupplier;
 
 public class GameState implements Serializable {
     private Map<String, Player> players;
@@ -11,6 +12,7 @@ public class GameState implements Serializable {
     private VotingSession currentVoting;
     private SabotageState sabotageState;
     private long gameStartTime;
+    private transient LongSupplier clock; // null = wall clock; replays supply the recorded time
 
     public enum GamePhase {
         LOBBY,
@@ -38,7 +40,7 @@ public class GameState implements Serializable {
     public void startGame() {
         gameInProgress = true;
         currentPhase = GamePhase.TASKS;
-        gameStartTime = System.currentTimeMillis();
+        gameStartTime = now();
     }
 
     public void endGame(GameEndReason reason) {
@@ -75,6 +77,23 @@ public class GameState implements Serializable {
         sabotageState.startSabotage(data.type, data.duration);
     }
 
+    // Clients mirror the server's sabotage from snapshots rather than running their own
+    public void syncSabotage(SabotageData data) {
+        sabotageState.isActive = !data.isFixed;
+        sabotageState.type = data.type;
+        sabotageState.startTime = now();
+        sabotageState.remainingTime = data.duration;
+        sabotageState.parameters = data.parameters;
+    }
+
+    private long now() {
+        return clock != null ? clock.getAsLong() : System.currentTimeMillis();
+    }
+
+    public void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
     public boolean shouldImpostorsWin() {
         long aliveCrewmates = players.values().stream()
                 .filter(p -> !p.isImpostor() && !p.isDead())
@@ -113,6 +132,8 @@ public class GameState implements Serializable {
     // Getters
     public Map<String, Player> getPlayers() { return players; }
     public GamePhase getCurrentPhase() { return currentPhase; }
+    public void setCurrentPhase(GamePhase currentPhase) { this.currentPhase = currentPhase; }
+    public Map<String, TaskProgress> getTaskProgress() { return taskProgress; }
     public VotingSession getCurrentVoting() { return currentVoting; }
     public SabotageState getSabotageState() { return sabotageState; }
     public long getGameStartTime() { return gameStartTime; }
@@ -2,6 +2,7 @@ package event;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.Map;
@@ -26,6 +27,23 @@ public class ImageCache {
         return img;
     }
 
+    // An image laid out like the screen's, so Java2D can keep it in video
+    // memory. config is the device it will be drawn to, or null for the
+    // default screen; headless there is no screen and a plain image is used.
+    public static BufferedImage createCompatible(GraphicsConfiguration config, int width, int height,
+                                                 int transparency) {
+        if (config == null) {
+            if (GraphicsEnvironment.isHeadless()) {
+                int type = transparency == Transparency.OPAQUE
+                        ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+                return new BufferedImage(width, height, type);
+            }
+            config = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+        }
+        return config.createCompatibleImage(width, height, transparency);
+    }
+
     public static void cleanup() {
         cache.clear();
     }
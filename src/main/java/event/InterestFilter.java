@@ -0,0 +1,69 @@
+package event;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Server-side interest management: which players' positions a client is sent.
+// Living players only get others they could actually see on screen, so the
+// server saves the bandwidth and a modified client has no positions to reveal
+// through walls.
+public class InterestFilter {
+    // Extra distance beyond the vision radius so players walking into view are
+    // already known to the client when the lighting reveals them
+    static final double MARGIN = 100.0;
+
+    private final GameMap map;
+    private final Map<String, Player> roster;
+
+    // roster is read for impostor flags; both belong to the lobby's worker
+    public InterestFilter(GameMap map, Map<String, Player> roster) {
+        this.map = map;
+        this.roster = roster;
+    }
+
+    // Player ids the viewer may see in this snapshot, or null for everyone:
+    // outside the task phase, for ghosts, and for clients not in the game yet
+    public Set<String> visibleTo(String viewerId, WorldSnapshot world) {
+        if (world.getPhase() != GameState.GamePhase.TASKS) return null;
+
+        Map<String, PlayerUpdateData> players = world.getPlayers();
+        PlayerUpdateData viewer = players.get(viewerId);
+        if (viewer == null || viewer.isDead || viewer.position == null) return null;
+
+        double radius = visionRadius(viewerId, world.getSabotage()) + MARGIN;
+        Map<String, Room> rooms = new HashMap<>();
+        Room viewerRoom = roomOf(viewer, rooms);
+
+        Set<String> visible = new HashSet<>();
+        visible.add(viewerId);
+        for (PlayerUpdateData other : players.values()) {
+            if (other == viewer || other.position == null) continue;
+
+            // Ghosts are invisible to the living
+            if (other.isDead) continue;
+
+            if (viewer.position.distance(other.position) <= radius
+                    || (viewerRoom != null && viewerRoom == roomOf(other, rooms))) {
+                visible.add(other.playerId);
+            }
+        }
+        return visible;
+    }
+
+    // Lights sabotage shrinks crewmate vision; impostors keep theirs
+    private double visionRadius(String viewerId, SabotageData sabotage) {
+        boolean lightsOut = sabotage != null && sabotage.type == SabotageData.SabotageType.LIGHTS;
+        Player player = roster.get(viewerId);
+        if (lightsOut && (player == null || !player.isImpostor())) {
+            return Player.LIGHTS_OUT_VISION_RADIUS;
+        }
+        return Player.VISION_RADIUS;
+    }
+
+    // Rooms come from the map rather than the client's own currentRoom claim
+    private Room roomOf(PlayerUpdateData player, Map<String, Room> rooms) {
+        return rooms.computeIfAbsent(player.playerId, id -> map.getRoomAt(player.position));
+    }
+}
@@ -0,0 +1,92 @@
+package event;
+
+import java.awt.geom.Point2D;
+
+// Recent timestamped positions of one remote player, kept in primitive arrays
+// so buffering 20 updates a second per player allocates nothing. Rendering
+// samples a point slightly in the past, between two received positions,
+// instead of jumping to each new one as it arrives.
+public class InterpolationBuffer {
+    private static final int CAPACITY = 32;
+    // Jumps larger than this are vents, meetings or respawns: snap, don't slide
+    static final double TELEPORT_DISTANCE = 200.0;
+
+    private final long[] times = new long[CAPACITY];
+    private final double[] xs = new double[CAPACITY];
+    private final double[] ys = new double[CAPACITY];
+    private final boolean[] moving = new boolean[CAPACITY];
+    private int newest = -1;
+    private int count;
+
+    // Positions must arrive in time order; late ones are dropped
+    public void add(long time, double x, double y, boolean isMoving) {
+        if (count > 0) {
+            if (time <= times[newest]) return;
+            if (Point2D.distance(xs[newest], ys[newest], x, y) > TELEPORT_DISTANCE) {
+                count = 0;
+            }
+        }
+        newest = (newest + 1) % CAPACITY;
+        times[newest] = time;
+        xs[newest] = x;
+        ys[newest] = y;
+        moving[newest] = isMoving;
+        count = Math.min(count + 1, CAPACITY);
+    }
+
+    // Position at the given time: interpolated between the two samples around
+    // it, the oldest sample before the buffer, and past the newest sample
+    // extrapolated along the last velocity for at most maxExtrapolation.
+    // Returns false if the buffer is empty.
+    public boolean sample(long time, long maxExtrapolation, Point2D.Double out) {
+        if (count == 0) return false;
+
+        if (time >= times[newest]) {
+            extrapolate(time, maxExtrapolation, out);
+            return true;
+        }
+
+        // Walk back from the newest sample; the render time is almost always
+        // within the last few
+        int later = newest;
+        for (int i = 1; i < count; i++) {
+            int earlier = (newest - i + CAPACITY) % CAPACITY;
+            if (times[earlier] <= time) {
+                double t = (double) (time - times[earlier]) / (times[later] - times[earlier]);
+                out.x = xs[earlier] + (xs[later] - xs[earlier]) * t;
+                out.y = ys[earlier] + (ys[later] - ys[earlier]) * t;
+                return true;
+            }
+            later = earlier;
+        }
+
+        // Older than anything we still hold
+        out.x = xs[later];
+        out.y = ys[later];
+        return true;
+    }
+
+    private void extrapolate(long time, long maxExtrapolation, Point2D.Double out) {
+        out.x = xs[newest];
+        out.y = ys[newest];
+        if (count < 2 || !moving[newest]) return;
+
+        int previous = (newest - 1 + CAPACITY) % CAPACITY;
+        long span = times[newest] - times[previous];
+        if (span <= 0) return;
+
+        long ahead = Math.min(time - times[newest], maxExtrapolation);
+        double t = (double) ahead / span;
+        out.x += (xs[newest] - xs[previous]) * t;
+        out.y += (ys[newest] - ys[previous]) * t;
+    }
+
+    public void clear() {
+        count = 0;
+        newest = -1;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
@@ -0,0 +1,115 @@
+package event;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Owns the journal directory: one file per game, and one flusher thread that
+// syncs every open journal in a batch every FLUSH_INTERVAL, so appending on a
+// lobby worker never waits for an fsync. At startup, journals that were never
+// closed belong to games that were running when the server died.
+public class JournalManager {
+    private static final long FLUSH_INTERVAL = 20; // ms of events a crash can lose
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final List<EventJournal> open = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    public JournalManager(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // A new journal for a game; null if it cannot be created, and the game
+    // simply runs without one
+    public EventJournal open(String lobbyId) {
+        String name = lobbyId.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + System.currentTimeMillis() + SUFFIX;
+        try {
+            EventJournal journal = EventJournal.create(directory.resolve(name), lobbyId);
+            open.add(journal);
+            return journal;
+        } catch (IOException e) {
+            System.err.println("Could not create journal for lobby " + lobbyId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void flush() {
+        for (EventJournal journal : open) {
+            journal.sync();
+            if (journal.isClosed() && !journal.hasUnsynced()) {
+                open.remove(journal);
+                journal.release();
+            }
+        }
+    }
+
+    // Journals of games that were still running, oldest first. Each is
+    // renamed once read so a second crash does not recover it twice; the
+    // recovered game continues in a new journal that starts with its history.
+    public List<List<EventJournal.Entry>> recover() {
+        List<List<EventJournal.Entry>> games = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            List<Path> paths = new ArrayList<>();
+            files.forEach(paths::add);
+            paths.sort(null);
+
+            for (Path path : paths) {
+                List<EventJournal.Entry> entries = EventJournal.readAll(path);
+                if (isGameRunning(entries)) {
+                    Files.move(path, path.resolveSibling(path.getFileName() + ".recovered"));
+                    games.add(entries);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error recovering journals: " + e.getMessage());
+        }
+        return games;
+    }
+
+    // A game had started and neither ended nor shut down cleanly
+    private static boolean isGameRunning(List<EventJournal.Entry> entries) {
+        boolean running = false;
+        for (EventJournal.Entry entry : entries) {
+            switch (entry.kind()) {
+                case EventJournal.GAME_START -> running = true;
+                case EventJournal.GAME_END, EventJournal.CLOSED -> running = false;
+                default -> {
+                }
+            }
+        }
+        return running;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Syncs what is left; journals of running games stay recoverable
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (EventJournal journal : open) {
+            journal.sync();
+            journal.release();
+        }
+        open.clear();
+    }
+}
@@ -0,0 +1,105 @@
+package event;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+// The original protocol: one Gson JSON document per line
+public class JsonMessageCodec implements MessageCodec {
+    public static final String NAME = "json";
+    private static final int MAX_FRAME_SIZE = 1024 * 1024; // 1 MB per message line
+
+    private final Gson gson;
+
+    // Decodes payloads straight into their registered classes
+    public JsonMessageCodec() {
+        this(PayloadRegistry.gson());
+    }
+
+    public JsonMessageCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public int id() {
+        return JSON_ID;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(NetworkMessage message) {
+        String jsonMessage = gson.toJson(message) + "\n";
+        return jsonMessage.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public NetworkMessage decode(ByteBuffer buffer) throws IOException {
+        while (true) {
+            int start = buffer.position();
+            int newline = -1;
+            for (int i = start; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+
+            if (newline < 0) {
+                if (buffer.remaining() > MAX_FRAME_SIZE) {
+                    throw new IOException("Frame too large");
+                }
+                return null;
+            }
+
+            int end = newline;
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            byte[] line = new byte[end - start];
+            buffer.get(start, line);
+            buffer.position(newline + 1);
+
+            // Skip blank lines, as readLine() callers always did
+            if (line.length > 0) {
+                return parse(new String(line, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Override
+    public NetworkMessage read(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                return line.size() > 0 ? parse(line.toString(StandardCharsets.UTF_8)) : null;
+            }
+            if (b == '\n') {
+                if (line.size() > 0) {
+                    return parse(line.toString(StandardCharsets.UTF_8).stripTrailing());
+                }
+                continue;
+            }
+            if (line.size() >= MAX_FRAME_SIZE) {
+                throw new IOException("Frame too large");
+            }
+            line.write(b);
+        }
+    }
+
+    private NetworkMessage parse(String json) throws IOException {
+        try {
+            return gson.fromJson(json, NetworkMessage.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed message: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package event;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The darkness around the player's vision, pre-rendered once per world radius
+// and darkness instead of filling the whole view with a RadialGradientPaint
+// every frame. The gradient only covers a square of twice the radius; beyond
+// it the darkness is flat, so the rest of the view is filled with a plain
+// color. Zooming scales the image on draw, so the cache holds one mask per
+// vision radius rather than one per zoom level.
+public class LightingMask {
+    private static final float[] FRACTIONS = {0.0f, 0.5f, 1.0f};
+    private static final Map<Long, LightingMask> cache = new ConcurrentHashMap<>();
+
+    private final BufferedImage image;
+    private final int radius;
+    private final Color edgeColor;
+
+    private LightingMask(int radius, float alpha) {
+        this.radius = radius;
+        this.edgeColor = new Color(0, 0, 0, (int) (alpha * 255));
+
+        Color[] colors = {
+                new Color(0, 0, 0, 0),
+                new Color(0, 0, 0, (int) (alpha * 128)),
+                edgeColor
+        };
+        image = ImageCache.createCompatible(null, radius * 2, radius * 2, Transparency.TRANSLUCENT);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setPaint(new RadialGradientPaint(radius, radius, radius, FRACTIONS, colors));
+            g2d.fillRect(0, 0, radius * 2, radius * 2);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    // radius in world units; alpha is the darkness at and beyond the edge
+    public static LightingMask of(double radius, float alpha) {
+        int pixels = Math.max(1, (int) Math.round(radius));
+        long key = ((long) pixels << 32) | Float.floatToIntBits(alpha);
+        return cache.computeIfAbsent(key, k -> new LightingMask(pixels, alpha));
+    }
+
+    // Darkens a width x height view around the screen point (centerX, centerY)
+    // with the camera at the given zoom
+    public void draw(Graphics2D g2d, double centerX, double centerY, double zoom, int width, int height) {
+        int screenRadius = Math.max(1, (int) Math.round(radius * zoom));
+        int left = (int) Math.round(centerX) - screenRadius;
+        int top = (int) Math.round(centerY) - screenRadius;
+        int right = left + screenRadius * 2;
+        int bottom = top + screenRadius * 2;
+
+        if (screenRadius == radius) {
+            g2d.drawImage(image, left, top, null);
+        } else {
+            g2d.drawImage(image, left, top, screenRadius * 2, screenRadius * 2, null);
+        }
+
+        // Flat darkness above, below, and to the sides of the gradient
+        g2d.setColor(edgeColor);
+        g2d.fillRect(0, 0, width, Math.max(0, top));
+        g2d.fillRect(0, bottom, width, Math.max(0, height - bottom));
+        g2d.fillRect(0, top, Math.max(0, left), screenRadius * 2);
+        g2d.fillRect(right, top, Math.max(0, width - right), screenRadius * 2);
+    }
+}
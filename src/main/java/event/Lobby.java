@@ -0,0 +1,681 @@
+package event;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.concurrent.*;
+
+// One independent game: its own players, GameState, settings and tick. Many
+// lobbies share the server's acceptor and I/O layer; each lobby's tick runs on
+// the worker thread the LobbyManager pinned it to.
+//
+// The lobby is an actor: client threads only post commands to its mailbox, and
+// every read or write of players and gameState happens on the pinned worker, in
+// the order the messages arrived. None of that state is locked.
+public class Lobby {
+    private static final int SNAPSHOT_HISTORY = 64; // ticks a client may lag behind before it gets a full snapshot
+    private static final int POSITION_HISTORY = 64; // positions kept per player for rewinding kills
+    private static final long MAX_REWIND_MILLIS = 500; // lag compensated for, at most
+
+    private final String id;
+    private final LobbySettings settings;
+    private final MessageCodecs codecs;
+    private final ScheduledExecutorService worker;
+    private final Mailbox mailbox;
+    private final List<ClientHandler> clients;
+    private final JournalManager journals; // null when journaling is off
+    private final Set<String> recoveredPlayers = ConcurrentHashMap.newKeySet(); // may rejoin a running game
+
+    // Worker thread only
+    private final Map<String, Player> players;
+    private final GameState gameState;
+    private final Map<String, PlayerUpdateData> latestUpdates = new HashMap<>();
+    private final WorldSnapshot.History snapshotHistory = new WorldSnapshot.History(SNAPSHOT_HISTORY);
+    private final InterestFilter interestFilter;
+    private final Map<String, InputClock> inputClocks = new HashMap<>(); // players moved by PLAYER_INPUT
+    private final Map<String, PositionHistory> positionHistories = new HashMap<>();
+    private final Point2D.Double rewound = new Point2D.Double();
+    private long tickNumber;
+    private EventJournal journal; // the running game's; null between games
+
+    // Published by the worker for the LobbyManager's matchmaking
+    private volatile boolean gameInProgress;
+    private ScheduledFuture<?> tickFuture;
+
+    public Lobby(String id, LobbySettings settings, ScheduledExecutorService worker, JournalManager journals) {
+        this.id = id;
+        this.settings = settings;
+        // Player indices are per lobby: they only ever name this lobby's
+        // players and are dropped with it
+        this.codecs = new MessageCodecs();
+        this.worker = worker;
+        this.journals = journals;
+        this.mailbox = new Mailbox("lobby " + id, worker);
+        this.clients = new CopyOnWriteArrayList<>();
+        this.players = new HashMap<>();
+        this.gameState = new GameState();
+        this.interestFilter = new InterestFilter(new GameMap(), players);
+    }
+
+    // Authoritative tick: state changes are collected between ticks and each
+    // client gets one snapshot per tick, delta-encoded against its last ack.
+    // The tick shares the mailbox's worker, so it never overlaps a command.
+    void start() {
+        if (settings.getTickRate() == 0) return;
+
+        long periodNanos = 1_000_000_000L / settings.getTickRate();
+        tickFuture = worker.scheduleAtFixedRate(this::tick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void close() {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+        }
+    }
+
+    // Called by the LobbyManager under its lock, so seats are never oversold.
+    // The client speaks this lobby's codecs before any broadcast can see it.
+    boolean tryAdd(ClientHandler client) {
+        if (!isOpen() && !recoveredPlayers.contains(client.getPlayerId())) return false;
+        client.enterLobby(codecs, id, () -> clients.add(client));
+        return true;
+    }
+
+    boolean remove(ClientHandler client) {
+        return clients.remove(client);
+    }
+
+    // Called by the LobbyManager under its lock
+    boolean replace(ClientHandler previous, ClientHandler client) {
+        int index = clients.indexOf(previous);
+        if (index < 0) return false;
+        client.enterLobby(codecs, id, () -> clients.set(index, client));
+        return true;
+    }
+
+    // Accepting players: not full and no game running
+    public boolean isOpen() {
+        return clients.size() < settings.getMaxPlayers() && !gameInProgress;
+    }
+
+    public boolean isEmpty() {
+        return clients.isEmpty();
+    }
+
+    private void tick() {
+        try {
+            recordPositions();
+            sendSnapshots();
+        } catch (RuntimeException e) {
+            // An exception would cancel the scheduled task and stop the tick for good
+            System.err.println("Error in tick of lobby " + id + ": " + e.getMessage());
+        }
+    }
+
+    private void recordPositions() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Player> entry : players.entrySet()) {
+            recordPosition(entry.getKey(), entry.getValue(), now);
+        }
+    }
+
+    private void recordPosition(String playerId, Player player, long now) {
+        positionHistories.computeIfAbsent(playerId, id -> new PositionHistory(POSITION_HISTORY))
+                .record(now, player.getX(), player.getY());
+    }
+
+    // Captures the world once, then sends every client only what changed since
+    // the snapshot it acknowledged, limited to the players it can see. Clients
+    // with the same acked tick and the same view then and now share one delta,
+    // encoded once. Visibility is a function of the snapshot, so the view at the
+    // acked tick is recomputed rather than stored per client.
+    private void sendSnapshots() {
+        WorldSnapshot previous = snapshotHistory.get(tickNumber);
+        WorldSnapshot current = WorldSnapshot.capture(tickNumber + 1, players, latestUpdates, gameState);
+        if (previous != null && current.deltaFrom(previous).isEmpty()) {
+            // Nothing changed: keep the old tick so idle clients' acks stay in the history
+            current = previous;
+        } else {
+            tickNumber++;
+            snapshotHistory.put(current);
+        }
+
+        Map<ViewKey, EncodedMessage> deltasByView = new HashMap<>();
+        for (ClientHandler client : clients) {
+            String playerId = client.getPlayerId();
+            if (playerId == null) continue;
+
+            WorldSnapshot base = snapshotHistory.get(client.getAckedTick());
+            if (base == null) {
+                base = WorldSnapshot.EMPTY; // ack fell out of the history
+            }
+            Set<String> baseView = interestFilter.visibleTo(playerId, base);
+            Set<String> view = interestFilter.visibleTo(playerId, current);
+
+            ViewKey key = new ViewKey(base.getTick(), baseView, view);
+            if (!deltasByView.containsKey(key)) {
+                // Players leaving the view arrive as removed, entering ones in full
+                SnapshotData delta = current.visibleOnly(view).deltaFrom(base.visibleOnly(baseView));
+                deltasByView.put(key, delta.isEmpty() ? null
+                        : EncodedMessage.of(new NetworkMessage(NetworkMessage.Type.SNAPSHOT, delta)));
+            }
+            EncodedMessage encoded = deltasByView.get(key);
+            if (encoded != null) {
+                client.sendUnreliable(encoded);
+            }
+        }
+    }
+
+    // Null views mean everyone
+    private record ViewKey(long baseTick, Set<String> baseView, Set<String> view) {
+    }
+
+    private void journal(int kind, String actor, String target, long value) {
+        journal(kind, actor, target, 0, 0, value);
+    }
+
+    // Worker thread only; appending is a memory copy, the disk is synced elsewhere
+    private void journal(int kind, String actor, String target, double x, double y, long value) {
+        if (journal != null) {
+            journal.append(kind, actor, target, x, y, value);
+        }
+    }
+
+    // Worker thread only. Each game gets its own journal from its start, so
+    // lobbies that never start a game cost no file.
+    private void openJournal() {
+        if (journals != null && journal == null) {
+            journal = journals.open(id);
+        }
+    }
+
+    // Worker thread only; the game's journal is finished
+    private void finishJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    // Marks the journal finished once everything already posted has run
+    void closeJournal() {
+        post(this::finishJournal);
+    }
+
+    // Rebuilds a game that was running when the server died from its journal,
+    // and copies the history into this lobby's new journal. Players are back
+    // in the game with their roles; they take their places again by
+    // connecting with their old ids, even though the game is in progress.
+    void restore(List<EventJournal.Entry> entries) {
+        for (EventJournal.Entry entry : entries) {
+            if (entry.kind() == EventJournal.JOIN) {
+                recoveredPlayers.add(entry.actor());
+            } else if (entry.kind() == EventJournal.LEAVE) {
+                recoveredPlayers.remove(entry.actor());
+            }
+        }
+        post(() -> {
+            openJournal();
+            for (EventJournal.Entry entry : entries) {
+                replay(entry);
+            }
+        });
+    }
+
+    private void replay(EventJournal.Entry entry) {
+        if (ReplayEngine.apply(entry, gameState, players)) {
+            journal(entry.kind(), entry.actor(), entry.target(), entry.x(), entry.y(), entry.value());
+        }
+    }
+
+    // Called on the client's reader thread; the message is handled later, on the
+    // worker. DISCONNECT is not routed here; the LobbyManager calls onPlayerLeft.
+    public void handleMessage(ClientHandler client, NetworkMessage message) {
+        post(() -> dispatch(client, message));
+    }
+
+    private void post(Runnable command) {
+        mailbox.post(() -> {
+            command.run();
+            gameInProgress = gameState.isGameInProgress();
+        });
+    }
+
+    private void dispatch(ClientHandler client, NetworkMessage message) {
+        switch (message.getType()) {
+            case CONNECT:
+                handleConnect(client, message);
+                break;
+            case PLAYER_UPDATE:
+                handlePlayerUpdate(client, message);
+                break;
+            case PLAYER_INPUT:
+                handlePlayerInput(client, message);
+                break;
+            case CHAT:
+                handleChat(message);
+                break;
+            case EMERGENCY_MEETING:
+                handleEmergencyMeeting(message);
+                break;
+            case VOTE:
+                handleVote(message);
+                break;
+            case TASK_COMPLETE:
+                handleTaskComplete(message);
+                break;
+            case KILL:
+                handleKill(client, message);
+                break;
+            case SABOTAGE:
+                handleSabotage(message);
+                break;
+        }
+    }
+
+    private void handleConnect(ClientHandler client, NetworkMessage message) {
+        ConnectionData data = (ConnectionData) message.getData();
+        // A player of a recovered game takes its old place back
+        if (!recoveredPlayers.remove(data.playerId) || !players.containsKey(data.playerId)) {
+            Player newPlayer = new Player(data.playerName, false);
+            players.put(data.playerId, newPlayer);
+            journal(EventJournal.JOIN, data.playerId, data.playerName, 0);
+        }
+
+        // Announce the player with its wire index; binary frames may only use
+        // the index once every client of the lobby has been sent this
+        // announcement. The newcomer learned the older indices on taking its seat.
+        ConnectionData announcement = new ConnectionData(data.playerId, data.isHost);
+        announcement.playerName = data.playerName;
+        announcement.playerColor = data.playerColor;
+        announcement.playerIndex = codecs.getIndexTable().intern(data.playerId);
+        announcement.lobbyId = id;
+        broadcastToAll(new NetworkMessage(NetworkMessage.Type.CONNECT, announcement));
+        codecs.getIndexTable().publish(data.playerId);
+
+        // Notify all clients about new player
+        broadcastPlayerList();
+
+        // The new player has acked nothing yet, so this gives it the full state
+        // while everyone else only gets the newcomer
+        sendSnapshots();
+
+        // Check if we can start the game
+        checkGameStart();
+    }
+
+    // The player is still in players with its role and tasks; sending snapshots
+    // now catches it up from its acked tick without waiting for the next tick
+    void onPlayerResumed() {
+        post(this::sendSnapshots);
+    }
+
+    void onPlayerLeft(ClientHandler client) {
+        post(() -> {
+            if (client.getPlayerId() != null) {
+                players.remove(client.getPlayerId());
+                latestUpdates.remove(client.getPlayerId());
+                inputClocks.remove(client.getPlayerId());
+                positionHistories.remove(client.getPlayerId());
+                journal(EventJournal.LEAVE, client.getPlayerId(), null, 0);
+            }
+            broadcastPlayerList();
+
+            // Check if game should end due to too few players
+            checkGameEnd();
+        });
+    }
+
+    // A client only reports its own player; updates naming anyone else are dropped
+    private void handlePlayerUpdate(ClientHandler client, NetworkMessage message) {
+        PlayerUpdateData data = (PlayerUpdateData) message.getData();
+        if (data == null || data.playerId == null || !data.playerId.equals(client.getPlayerId())) return;
+        Player player = players.get(data.playerId);
+        PlayerUpdateData state = latestUpdates.get(data.playerId);
+        if (player != null && state != null && inputClocks.containsKey(data.playerId)) {
+            // Position is the server's once the client sends inputs; keep only
+            // what the server cannot work out itself
+            state.isInVent = data.isInVent;
+            state.currentRoom = data.currentRoom;
+        } else if (player != null) {
+            player.updateFromData(data);
+            latestUpdates.put(data.playerId, data);
+            if (tickFuture == null) {
+                recordPosition(data.playerId, player, System.currentTimeMillis());
+                broadcastToInterested(message, data.playerId);
+            }
+        }
+    }
+
+    // Server-authoritative movement: integrates each input frame with the same
+    // step the client predicted with. The sender's own id is used, never the
+    // one in the payload.
+    private void handlePlayerInput(ClientHandler client, NetworkMessage message) {
+        InputData input = (InputData) message.getData();
+        String playerId = client.getPlayerId();
+        Player player = playerId != null ? players.get(playerId) : null;
+        if (player == null) return;
+
+        InputClock clock = inputClocks.computeIfAbsent(playerId, id -> new InputClock());
+        PlayerUpdateData state = latestUpdates.computeIfAbsent(playerId,
+                id -> new PlayerUpdateData(id, player.getPosition()));
+
+        // Frames already applied are repeats for loss recovery; frames that fell
+        // out of every copy we received are gone and the client gets corrected
+        long first = input.sequence - input.buttons.length + 1;
+        boolean applied = false;
+        for (int i = 0; i < input.buttons.length; i++) {
+            long sequence = first + i;
+            if (sequence <= state.lastInput) continue;
+            if (!clock.tryConsume()) break;
+
+            player.applyInput(input.buttons[i]);
+            state.lastInput = sequence;
+            state.isMoving = input.buttons[i] != 0;
+            applied = true;
+        }
+
+        if (applied && tickFuture == null) {
+            recordPosition(playerId, player, System.currentTimeMillis());
+            PlayerUpdateData update = new PlayerUpdateData(playerId, player.getPosition());
+            update.isMoving = state.isMoving;
+            update.isInVent = state.isInVent;
+            update.currentRoom = state.currentRoom;
+            update.lastInput = state.lastInput;
+            broadcastToInterested(new NetworkMessage(NetworkMessage.Type.PLAYER_UPDATE, update), playerId);
+        }
+    }
+
+    // Without a tick, each update goes straight to the clients that can see the mover
+    private void broadcastToInterested(NetworkMessage message, String moverId) {
+        WorldSnapshot world = WorldSnapshot.capture(tickNumber, players, latestUpdates, gameState);
+        EncodedMessage encoded = EncodedMessage.of(message);
+        for (ClientHandler client : clients) {
+            if (client.getPlayerId() == null) continue;
+
+            Set<String> view = interestFilter.visibleTo(client.getPlayerId(), world);
+            if (view == null || view.contains(moverId)) {
+                client.sendUnreliable(encoded);
+            }
+        }
+    }
+
+    private void handleChat(NetworkMessage message) {
+        ChatMessage chatMessage = (ChatMessage) message.getData();
+
+        // Filter messages based on type
+        List<ClientHandler> recipients = clients.stream()
+                .filter(client -> canReceiveMessage(client, chatMessage))
+                .toList();
+
+        broadcastToClients(message, recipients);
+    }
+
+    private void handleEmergencyMeeting(NetworkMessage message) {
+        EmergencyData data = (EmergencyData) message.getData();
+        gameState.startEmergencyMeeting(data);
+        journal(EventJournal.EMERGENCY_MEETING, data.reporterId, data.deadBodyId,
+                data.type != null ? data.type.ordinal() : 0);
+        broadcastToAll(message);
+    }
+
+    private void handleVote(NetworkMessage message) {
+        VoteData data = (VoteData) message.getData();
+        gameState.registerVote(data);
+        journal(EventJournal.VOTE, data.voterId, data.isSkip ? null : data.votedId, 0);
+        broadcastToAll(message);
+
+        // Check if voting is complete
+        if (gameState.isVotingComplete()) {
+            handleVotingResults();
+        }
+    }
+
+    private void handleTaskComplete(NetworkMessage message) {
+        TaskData data = (TaskData) message.getData();
+        gameState.completeTask(data);
+        journal(EventJournal.TASK_COMPLETE, data.playerId, data.taskId,
+                data.taskType != null ? data.taskType.ordinal() : 0);
+        broadcastToAll(message);
+
+        // Check if all tasks are complete
+        if (gameState.areAllTasksComplete()) {
+            handleCrewmateVictory();
+        }
+    }
+
+    // The killer saw the victim where it was a round trip plus the client's
+    // interpolation delay ago, so that is where the range is checked. The
+    // killer itself is taken as it is now: its own movement is predicted, so
+    // it sees itself in the present.
+    private void handleKill(ClientHandler client, NetworkMessage message) {
+        KillData data = (KillData) message.getData();
+        String rejection = validateKill(client, data);
+        if (rejection != null) {
+            client.sendMessage(new NetworkMessage(NetworkMessage.Type.ERROR, "Kill rejected: " + rejection));
+            return;
+        }
+
+        Player victim = players.get(data.victimId);
+        victim.kill();
+        data.location = new Point2D.Double(victim.getX(), victim.getY());
+        gameState.registerKill(data);
+        journal(EventJournal.KILL, data.killerId, data.victimId, data.location.x, data.location.y, 0);
+        broadcastToAll(message);
+
+        // Check win conditions
+        checkWinConditions();
+    }
+
+    // Returns why the kill is invalid, or null if it stands. Only the sender
+    // can be the killer, whatever the payload says.
+    private String validateKill(ClientHandler client, KillData data) {
+        Player killer = players.get(client.getPlayerId());
+        Player victim = data.victimId != null ? players.get(data.victimId) : null;
+        if (killer == null || !client.getPlayerId().equals(data.killerId)) return "not the sender";
+        if (!killer.isImpostor() || killer.isDead()) return "killer cannot kill";
+        if (victim == null || victim.isDead() || victim.isImpostor()) return "invalid victim";
+
+        double range = Player.INTERACTION_RANGE;
+        if (Point2D.distance(killer.getX(), killer.getY(), victim.getX(), victim.getY()) < range) {
+            return null;
+        }
+
+        PositionHistory history = positionHistories.get(data.victimId);
+        if (history != null && history.positionAt(killerViewTime(client), rewound)
+                && Point2D.distance(killer.getX(), killer.getY(), rewound.x, rewound.y) < range) {
+            return null;
+        }
+        return "out of range";
+    }
+
+    // Server time the killer's screen showed when the kill arrived: a round
+    // trip plus the interpolation delay the client chose for this link's
+    // jitter. The client's own timestamp is on a different clock, so it is
+    // not used.
+    private long killerViewTime(ClientHandler client) {
+        RttEstimator rtt = client.getRtt();
+        long lag = RemotePlayerInterpolator.delayFor(rtt)
+                + (rtt.hasSamples() ? Math.round(rtt.getSmoothedRttMillis()) : 0);
+        return System.currentTimeMillis() - Math.min(lag, MAX_REWIND_MILLIS);
+    }
+
+    private void handleSabotage(NetworkMessage message) {
+        SabotageData data = (SabotageData) message.getData();
+        // Without a type there is nothing to start, journal or replay
+        if (data == null || data.type == null) return;
+        gameState.triggerSabotage(data);
+        journal(EventJournal.SABOTAGE, null, null, data.duration, 0, data.type.ordinal());
+        broadcastToAll(message);
+    }
+
+    private void checkGameStart() {
+        if (players.size() >= settings.getMinPlayers() && !gameState.isGameInProgress()) {
+            startGame();
+        }
+    }
+
+    private void startGame() {
+        // The journal starts with who is playing, so recovery knows who may rejoin
+        openJournal();
+        for (Map.Entry<String, Player> player : players.entrySet()) {
+            journal(EventJournal.JOIN, player.getKey(), player.getValue().getName(), 0);
+        }
+
+        // Assign impostors
+        assignImpostors();
+
+        // Assign tasks
+        assignTasks();
+
+        // Update game state
+        gameState.startGame();
+        journal(EventJournal.GAME_START, null, null, 0);
+
+        // Notify all players; each gets the phase change and new state as a delta
+        sendSnapshots();
+    }
+
+    private void assignImpostors() {
+        List<String> playerIds = new ArrayList<>(players.keySet());
+        Collections.shuffle(playerIds);
+
+        for (int i = 0; i < settings.getImpostorCount() && i < playerIds.size(); i++) {
+            Player player = players.get(playerIds.get(i));
+            player.setImpostor(true);
+            journal(EventJournal.ROLE, playerIds.get(i), null, 1);
+        }
+    }
+
+    private void assignTasks() {
+        for (Player player : players.values()) {
+            if (!player.isImpostor()) {
+                List<Task> tasks = generateTaskList();
+                player.assignTasks(tasks);
+            }
+        }
+    }
+
+    private List<Task> generateTaskList() {
+        // Generate a balanced list of tasks
+        List<Task> tasks = new ArrayList<>();
+        tasks.add(new Task("Fix Wiring", new Point2D.Double(0, 0), TaskType.WIRES));
+        // Add more tasks based on game balance
+        return tasks;
+    }
+
+    private void checkWinConditions() {
+        if (gameState.shouldImpostorsWin()) {
+            handleImpostorVictory();
+        } else if (gameState.shouldCrewmatesWin()) {
+            handleCrewmateVictory();
+        }
+    }
+
+    private void handleImpostorVictory() {
+        endGame(GameState.GameEndReason.IMPOSTOR_VICTORY, "Impostors Win!");
+    }
+
+    private void handleCrewmateVictory() {
+        endGame(GameState.GameEndReason.CREWMATE_VICTORY, "Crewmates Win!");
+    }
+
+    private void endGame(GameState.GameEndReason reason, String message) {
+        gameState.endGame(reason);
+        journal(EventJournal.GAME_END, null, null, reason.ordinal());
+        finishJournal();
+        broadcastGameEnd(message);
+    }
+
+    private void broadcastGameEnd(String message) {
+        NetworkMessage endMessage = new NetworkMessage(
+                NetworkMessage.Type.GAME_END,
+                new GameEndData(message)
+        );
+        broadcastToAll(endMessage);
+    }
+
+    private void checkGameEnd() {
+        if (players.size() < settings.getMinPlayers() && gameState.isGameInProgress()) {
+            // End game due to insufficient players
+            endGame(GameState.GameEndReason.INSUFFICIENT_PLAYERS, "Game ended: Too few players");
+        }
+    }
+
+    private boolean canReceiveMessage(ClientHandler client, ChatMessage message) {
+        Player player = players.get(client.getPlayerId());
+        if (player == null) return false;
+
+        return switch (message.type) {
+            case GLOBAL -> true;
+            case IMPOSTOR -> player.isImpostor();
+            case GHOST -> player.isDead();
+            case SYSTEM -> true;
+            default -> false;
+        };
+    }
+
+    public void broadcastToAll(NetworkMessage message) {
+        broadcastToClients(message, clients);
+    }
+
+    // Encodes once per codec in use and writes the same bytes to every recipient
+    private void broadcastToClients(NetworkMessage message, List<ClientHandler> recipients) {
+        if (recipients.isEmpty()) return;
+
+        EncodedMessage encoded = EncodedMessage.of(message);
+        for (ClientHandler client : recipients) {
+            client.sendEncoded(encoded);
+        }
+    }
+
+    private void broadcastPlayerList() {
+        NetworkMessage message = new NetworkMessage(
+                NetworkMessage.Type.PLAYER_LIST,
+                new ArrayList<>(players.values())
+        );
+        broadcastToAll(message);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public LobbySettings getSettings() {
+        return settings;
+    }
+
+    public int getPlayerCount() {
+        return clients.size();
+    }
+
+    // Only safe to use from the lobby's own worker, e.g. inside a posted command
+    GameState getGameState() {
+        return gameState;
+    }
+
+    public boolean isGameInProgress() {
+        return gameInProgress;
+    }
+
+    // Caps how fast a client's inputs are applied at the client frame rate plus
+    // some slack, so a modified client cannot move faster by sending more frames.
+    // The burst absorbs inputs that arrive together after a network stall.
+    private static class InputClock {
+        private static final double FRAMES_PER_SECOND = 60 * 1.1;
+        private static final double MAX_BURST = 30;
+
+        private double credit = MAX_BURST;
+        private long lastRefill = System.nanoTime();
+
+        boolean tryConsume() {
+            long now = System.nanoTime();
+            credit = Math.min(MAX_BURST, credit + (now - lastRefill) / 1e9 * FRAMES_PER_SECOND);
+            lastRefill = now;
+            if (credit < 1) {
+                return false;
+            }
+            credit--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package event;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Routes connecting players into lobbies and pins every lobby to one of a fixed
+// set of worker threads, so a single core can tick dozens of games.
+public class LobbyManager {
+    private final ServerConfig config;
+    private final Map<String, Lobby> lobbies;
+    private final Map<Lobby, Integer> workerOf;
+    private final ScheduledExecutorService[] workers;
+    private final int[] lobbiesPerWorker;
+    private final AtomicInteger nextLobbyNumber;
+    private final JournalManager journals; // null when journaling is off
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LobbyManager(ServerConfig config) {
+        this.config = config;
+        this.lobbies = new ConcurrentHashMap<>();
+        this.workerOf = new ConcurrentHashMap<>();
+        this.workers = new ScheduledExecutorService[config.getLobbyWorkers()];
+        this.lobbiesPerWorker = new int[workers.length];
+        this.nextLobbyNumber = new AtomicInteger(1);
+
+        for (int i = 0; i < workers.length; i++) {
+            String name = "lobby-worker-" + i;
+            workers[i] = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        this.journals = openJournals(config);
+        if (journals != null) {
+            recoverLobbies();
+        }
+    }
+
+    private static JournalManager openJournals(ServerConfig config) {
+        if (config.getJournalDirectory() == null) return null;
+        try {
+            return new JournalManager(Path.of(config.getJournalDirectory()));
+        } catch (IOException e) {
+            System.err.println("Journaling disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Games that were running when the server died come back under their old
+    // lobby ids, with the same players, roles, kills and tasks. Their players
+    // rejoin by connecting to that lobby with their old ids.
+    private void recoverLobbies() {
+        for (List<EventJournal.Entry> entries : journals.recover()) {
+            String lobbyId = entries.get(0).actor();
+            lock.lock();
+            try {
+                Lobby lobby = lobbyId != null && !lobbies.containsKey(lobbyId) ? createLobby(lobbyId) : null;
+                if (lobby != null) {
+                    lobby.restore(entries);
+                    System.out.println("Recovered lobby " + lobbyId + " from its journal");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // A requested lobby id joins (or creates) that lobby; otherwise the player
+    // goes to the first open lobby, or a new one. Null if nothing can take them.
+    public Lobby join(ClientHandler client, ConnectionData request) {
+        lock.lock();
+        try {
+            Lobby lobby;
+            if (request.lobbyId != null) {
+                lobby = lobbies.get(request.lobbyId);
+                if (lobby == null) {
+                    lobby = createLobby(request.lobbyId);
+                }
+            } else {
+                lobby = findOpenLobby();
+                if (lobby == null) {
+                    lobby = createLobby("lobby-" + nextLobbyNumber.getAndIncrement());
+                }
+            }
+
+            if (lobby == null || !lobby.tryAdd(client)) {
+                return null;
+            }
+            return lobby;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes the player and retires the lobby once it is empty. The leave is
+    // posted first so the last LEAVE reaches the journal before it closes.
+    public void leave(ClientHandler client, Lobby lobby) {
+        lock.lock();
+        try {
+            if (!lobby.remove(client)) return;
+            lobby.onPlayerLeft(client);
+            if (lobby.isEmpty()) {
+                retire(lobby);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A resumed session's new connection takes the old one's seat; false if
+    // the lobby has been retired or the old connection already left
+    public boolean rejoin(ClientHandler previous, ClientHandler client, Lobby lobby) {
+        lock.lock();
+        try {
+            return lobbies.get(lobby.getId()) == lobby && lobby.replace(previous, client);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lock
+    private Lobby findOpenLobby() {
+        for (Lobby lobby : lobbies.values()) {
+            if (lobby.isOpen()) {
+                return lobby;
+            }
+        }
+        return null;
+    }
+
+    // Caller holds lock
+    private Lobby createLobby(String id) {
+        if (lobbies.size() >= config.getMaxLobbies()) {
+            return null;
+        }
+
+        // Pin to the least loaded worker
+        int worker = 0;
+        for (int i = 1; i < workers.length; i++) {
+            if (lobbiesPerWorker[i] < lobbiesPerWorker[worker]) {
+                worker = i;
+            }
+        }
+
+        Lobby lobby = new Lobby(id, config.getLobbySettings(), workers[worker], journals);
+        lobbies.put(id, lobby);
+        workerOf.put(lobby, worker);
+        lobbiesPerWorker[worker]++;
+        lobby.start();
+        return lobby;
+    }
+
+    // Caller holds lock
+    private void retire(Lobby lobby) {
+        lobby.closeJournal();
+        lobby.close();
+        lobbies.remove(lobby.getId());
+        Integer worker = workerOf.remove(lobby);
+        if (worker != null) {
+            lobbiesPerWorker[worker]--;
+        }
+    }
+
+    public Lobby getLobby(String id) {
+        return lobbies.get(id);
+    }
+
+    public Collection<Lobby> getLobbies() {
+        return new ArrayList<>(lobbies.values());
+    }
+
+    public int getLobbyCount() {
+        return lobbies.size();
+    }
+
+    // Lobbies currently pinned to each worker thread
+    public List<Integer> getWorkerLoads() {
+        lock.lock();
+        try {
+            List<Integer> loads = new ArrayList<>(workers.length);
+            for (int count : lobbiesPerWorker) {
+                loads.add(count);
+            }
+            return loads;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        lock.lock();
+        try {
+            for (Lobby lobby : lobbies.values()) {
+                lobby.close();
+            }
+            lobbies.clear();
+            workerOf.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (ScheduledExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+        // Running games' journals are synced but left open for recovery
+        if (journals != null) {
+            journals.shutdown();
+        }
+    }
+}
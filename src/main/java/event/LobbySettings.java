@@ -0,0 +1,81 @@
+package event;
+
+// Per-game rules; every lobby on a server can run with its own settings
+public class LobbySettings {
+    private final int maxPlayers;
+    private final int minPlayers;
+    private final int impostorCount;
+    private final int tickRate;
+
+    private LobbySettings(Builder builder) {
+        this.maxPlayers = builder.maxPlayers;
+        this.minPlayers = builder.minPlayers;
+        this.impostorCount = builder.impostorCount;
+        this.tickRate = builder.tickRate;
+    }
+
+    public static LobbySettings defaults() {
+        return new Builder().build();
+    }
+
+    // Getters
+    public int getMaxPlayers() { return maxPlayers; }
+    public int getMinPlayers() { return minPlayers; }
+    public int getImpostorCount() { return impostorCount; }
+    public int getTickRate() { return tickRate; }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .maxPlayers(maxPlayers)
+                .minPlayers(minPlayers)
+                .impostorCount(impostorCount)
+                .tickRate(tickRate);
+    }
+
+    public static class Builder {
+        private int maxPlayers = 10;
+        private int minPlayers = 4;
+        private int impostorCount = 2;
+        private int tickRate = 20;
+
+        public Builder maxPlayers(int maxPlayers) {
+            if (maxPlayers < 1) {
+                throw new IllegalArgumentException("maxPlayers must be at least 1");
+            }
+            this.maxPlayers = maxPlayers;
+            return this;
+        }
+
+        public Builder minPlayers(int minPlayers) {
+            if (minPlayers < 1) {
+                throw new IllegalArgumentException("minPlayers must be at least 1");
+            }
+            this.minPlayers = minPlayers;
+            return this;
+        }
+
+        public Builder impostorCount(int impostorCount) {
+            if (impostorCount < 0) {
+                throw new IllegalArgumentException("impostorCount must not be negative");
+            }
+            this.impostorCount = impostorCount;
+            return this;
+        }
+
+        // Snapshots per second; 0 re-broadcasts every PLAYER_UPDATE immediately
+        public Builder tickRate(int tickRate) {
+            if (tickRate < 0 || tickRate > 128) {
+                throw new IllegalArgumentException("tickRate must be between 0 and 128");
+            }
+            this.tickRate = tickRate;
+            return this;
+        }
+
+        public LobbySettings build() {
+            if (minPlayers > maxPlayers) {
+                throw new IllegalArgumentException("minPlayers must not exceed maxPlayers");
+            }
+            return new LobbySettings(this);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package event;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Models a stream of position updates over a lossy link and compares how stale
+// the newest position the receiver has is, for TCP versus the UDP side channel.
+// Runs entirely in simulated time, so no network or root access (tc netem) is
+// needed and results are reproducible for a given seed.
+//
+// TCP: every update is one segment. A lost segment is resent by fast retransmit
+// once three later segments have been acked, or when the retransmission timeout
+// fires (200 ms minimum, doubling per attempt). Nothing behind a missing segment
+// reaches the application until it arrives: head-of-line blocking.
+// UDP: a lost datagram is gone; the receiver keeps the highest sequence it has
+// seen and drops anything older, like DatagramTransport does.
+//
+//   java event.LossyLinkSimulator [sendRateHz] [oneWayDelayMs] [jitterMs] [seconds]
+//   java event.LossyLinkSimulator 30 40 5 120
+public class LossyLinkSimulator {
+    private static final double[] LOSS_RATES = {0.0, 0.01, 0.02, 0.03, 0.04, 0.05};
+    private static final double RENDER_RATE_HZ = 60;
+    private static final double MIN_RTO_MS = 200;
+    private static final int DUP_ACK_THRESHOLD = 3;
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        double sendRateHz = args.length > 0 ? Double.parseDouble(args[0]) : 30;
+        double oneWayMs = args.length > 1 ? Double.parseDouble(args[1]) : 40;
+        double jitterMs = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 120;
+
+        Link link = new Link(oneWayMs, jitterMs);
+        int updates = (int) (seconds * sendRateHz);
+        double intervalMs = 1000.0 / sendRateHz;
+
+        System.out.printf("%.0f Hz updates, %.0f ms one-way delay, +/-%.0f ms jitter, %.0f s%n",
+                sendRateHz, oneWayMs, jitterMs, seconds);
+        System.out.println("staleness = age of the newest position the receiver holds, sampled per rendered frame");
+        System.out.printf("%6s %5s %10s %10s %10s %10s %10s%n",
+                "loss", "link", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "lost");
+
+        for (double loss : LOSS_RATES) {
+            double[] sendTimes = new double[updates];
+            for (int i = 0; i < updates; i++) {
+                sendTimes[i] = i * intervalMs;
+            }
+
+            double[] tcp = simulateTcp(sendTimes, link, loss, new Random(SEED));
+            double[] udp = simulateUdp(sendTimes, link, loss, new Random(SEED));
+            print(loss, "tcp", sendTimes, tcp);
+            print(loss, "udp", sendTimes, udp);
+        }
+    }
+
+    // Returns the time each update is handed to the application, in send order
+    private static double[] simulateTcp(double[] sendTimes, Link link, double loss, Random random) {
+        int count = sendTimes.length;
+        double[] arrivals = new double[count];
+        double rttMs = 2 * link.oneWayMs;
+        double baseRto = Math.max(MIN_RTO_MS, rttMs + 4 * link.jitterMs);
+
+        for (int i = 0; i < count; i++) {
+            double sendAt = sendTimes[i];
+            double rto = baseRto;
+            boolean firstAttempt = true;
+            while (random.nextDouble() < loss) {
+                // Fast retransmit needs three later segments to reach the receiver
+                // and their duplicate acks to come back, before the timer fires
+                double fastRetransmit = i + DUP_ACK_THRESHOLD < count
+                        ? sendTimes[i + DUP_ACK_THRESHOLD] + rttMs
+                        : Double.MAX_VALUE;
+                if (firstAttempt && fastRetransmit < sendAt + rto) {
+                    sendAt = fastRetransmit;
+                } else {
+                    sendAt += rto;
+                    rto *= 2;
+                }
+                firstAttempt = false;
+            }
+            arrivals[i] = sendAt + link.delay(random);
+        }
+
+        // In-order delivery: nothing is released before everything ahead of it
+        double[] delivered = new double[count];
+        double released = 0;
+        for (int i = 0; i < count; i++) {
+            released = Math.max(released, arrivals[i]);
+            delivered[i] = released;
+        }
+        return delivered;
+    }
+
+    // Lost datagrams are NaN
+    private static double[] simulateUdp(double[] sendTimes, Link link, double loss, Random random) {
+        double[] arrivals = new double[sendTimes.length];
+        for (int i = 0; i < sendTimes.length; i++) {
+            arrivals[i] = random.nextDouble() < loss
+                    ? Double.NaN
+                    : sendTimes[i] + link.delay(random);
+        }
+        return arrivals;
+    }
+
+    private static void print(double loss, String name, double[] sendTimes, double[] arrivals) {
+        double[] staleness = sampleStaleness(sendTimes, arrivals);
+        Arrays.sort(staleness);
+        long lost = Arrays.stream(arrivals).filter(Double::isNaN).count();
+        System.out.printf("%5.0f%% %5s %10.1f %10.1f %10.1f %10.1f %10d%n",
+                loss * 100, name,
+                percentile(staleness, 0.50),
+                percentile(staleness, 0.99),
+                percentile(staleness, 0.999),
+                staleness.length > 0 ? staleness[staleness.length - 1] : 0,
+                lost);
+    }
+
+    // For every rendered frame: how old is the newest update received so far
+    private static double[] sampleStaleness(double[] sendTimes, double[] arrivals) {
+        int count = sendTimes.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(arrivalOrMax(arrivals[a]), arrivalOrMax(arrivals[b])));
+
+        double frameMs = 1000.0 / RENDER_RATE_HZ;
+        double start = sendTimes[0] + frameMs;
+        double end = sendTimes[count - 1];
+        double[] samples = new double[(int) ((end - start) / frameMs) + 1];
+
+        int next = 0;
+        int newest = -1;
+        int sampled = 0;
+        for (double frame = start; frame <= end && sampled < samples.length; frame += frameMs) {
+            while (next < count && arrivalOrMax(arrivals[order[next]]) <= frame) {
+                newest = Math.max(newest, order[next]); // stale reordered packets are dropped
+                next++;
+            }
+            if (newest >= 0) {
+                samples[sampled++] = frame - sendTimes[newest];
+            }
+        }
+        return Arrays.copyOf(samples, sampled);
+    }
+
+    private static double arrivalOrMax(double arrival) {
+        return Double.isNaN(arrival) ? Double.MAX_VALUE : arrival;
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private record Link(double oneWayMs, double jitterMs) {
+        double delay(Random random) {
+            return oneWayMs + (random.nextDouble() * 2 - 1) * jitterMs;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package event;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Single-consumer command queue. Any thread may post; commands run one at a
+// time, in the order they were posted, on the executor the owner is pinned to.
+// State touched only from commands needs no locks.
+public class Mailbox {
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final String name;
+    private final Executor executor;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile Thread owner;
+
+    public Mailbox(String name, Executor executor) {
+        this(name, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    public Mailbox(String name, Executor executor, int batchSize) {
+        this.name = name;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    public void post(Runnable command) {
+        commands.offer(command);
+        schedule();
+    }
+
+    // At most one drain is queued on the executor at a time, which is what
+    // keeps commands from running concurrently
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // The worker is shutting down; nothing will ever run these
+            commands.clear();
+        }
+    }
+
+    private void drain() {
+        owner = Thread.currentThread();
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                Runnable command = commands.poll();
+                if (command == null) break;
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error in " + name + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            owner = null;
+            scheduled.set(false);
+        }
+
+        // Give other mailboxes on the same worker a turn, then pick up whatever
+        // is left or was posted while the flag was still set
+        if (!commands.isEmpty()) {
+            schedule();
+        }
+    }
+
+    // True while called from inside one of this mailbox's commands
+    public boolean isOwnerThread() {
+        return owner == Thread.currentThread();
+    }
+}
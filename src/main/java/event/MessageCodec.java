@@ -0,0 +1,27 @@
+package event;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public interface MessageCodec {
+    // Small dense ids so EncodedMessage can cache one frame per codec kind in an array
+    int JSON_ID = 0;
+    int BINARY_ID = 1;
+    int CODEC_COUNT = 2;
+
+    int id();
+
+    // Name exchanged in ConnectionData during CONNECT negotiation
+    String name();
+
+    // Returns a complete frame, framing included
+    byte[] encode(NetworkMessage message);
+
+    // Decodes one frame from a buffer in read mode. Returns null and leaves the
+    // position untouched if the buffer does not yet hold a complete frame.
+    NetworkMessage decode(ByteBuffer buffer) throws IOException;
+
+    // Blocking variant for stream-based readers; returns null at end of stream
+    NetworkMessage read(InputStream in) throws IOException;
+}
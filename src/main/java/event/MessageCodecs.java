@@ -0,0 +1,54 @@
+package event;
+
+// The codecs one endpoint can speak, sharing a single player index table
+public class MessageCodecs {
+    // JSON writes ids as they are, so every endpoint and lobby shares one
+    // instance and a broadcast is encoded to JSON only once
+    private static final JsonMessageCodec JSON = new JsonMessageCodec();
+
+    private final PlayerIndexTable indexTable;
+    private final JsonMessageCodec json;
+    private final BinaryMessageCodec binary;
+
+    public MessageCodecs() {
+        this.indexTable = new PlayerIndexTable();
+        this.json = JSON;
+        this.binary = new BinaryMessageCodec(indexTable);
+    }
+
+    // Every connection starts out speaking JSON until CONNECT has been negotiated
+    public MessageCodec json() {
+        return json;
+    }
+
+    public MessageCodec binary() {
+        return binary;
+    }
+
+    public MessageCodec byName(String name) {
+        if (BinaryMessageCodec.NAME.equals(name)) return binary;
+        if (JsonMessageCodec.NAME.equals(name)) return json;
+        return null;
+    }
+
+    // Picks the first codec from the client's preference list that we support
+    public MessageCodec negotiate(String[] offered) {
+        if (offered != null) {
+            for (String name : offered) {
+                MessageCodec codec = byName(name);
+                if (codec != null) {
+                    return codec;
+                }
+            }
+        }
+        return json;
+    }
+
+    public static String[] supportedNames() {
+        return new String[] {BinaryMessageCodec.NAME, JsonMessageCodec.NAME};
+    }
+
+    public PlayerIndexTable getIndexTable() {
+        return indexTable;
+    }
+}
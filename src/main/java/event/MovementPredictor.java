@@ -0,0 +1,158 @@
+package event;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Client-side prediction for the local player. Every frame's input is applied
+// immediately, numbered and sent to the server, which integrates the same
+// inputs authoritatively. When an authoritative position arrives the inputs it
+// already covers are dropped and the rest are replayed on top of it, so the
+// local player only moves if the server actually disagreed.
+public class MovementPredictor {
+    // Frames repeated in every PLAYER_INPUT so a lost datagram costs nothing
+    static final int REDUNDANT_FRAMES = 8;
+    // Inputs kept for replay; beyond this the server is too far behind to matter
+    private static final int MAX_PENDING = 256;
+    // Corrections smaller than this are blended out over a few frames instead
+    // of snapping, larger ones (teleports, vents) snap
+    private static final double SNAP_DISTANCE = 64.0;
+    private static final double SMOOTHING = 0.8;
+
+    private final Player player;
+    private final String playerId;
+    private final Consumer<InputData> sender;
+    private final ArrayDeque<PendingInput> pending = new ArrayDeque<>();
+    private final AtomicReference<PlayerUpdateData> latestAuthoritative = new AtomicReference<>();
+    private long nextSequence = 1;
+    private int lastButtons;
+
+    // Visual offset left over from the last correction; decays every frame
+    private double errorX;
+    private double errorY;
+
+    // Where the player was shown before the last tick, so frames drawn
+    // between ticks can interpolate towards the current position
+    private double previousShownX = Double.NaN;
+    private double previousShownY = Double.NaN;
+
+    // Metrics
+    private long corrections;
+    private double lastCorrection;
+
+    public MovementPredictor(Player player, String playerId, Consumer<InputData> sender) {
+        this.player = player;
+        this.playerId = playerId;
+        this.sender = sender;
+    }
+
+    // Once per game frame, on the game loop thread; everything but
+    // onServerState runs there
+    public void tick() {
+        PlayerUpdateData authoritative = latestAuthoritative.getAndSet(null);
+        if (authoritative != null) {
+            reconcile(authoritative);
+        }
+        previousShownX = player.getX() + errorX;
+        previousShownY = player.getY() + errorY;
+
+        int buttons = player.getInputButtons();
+        errorX *= SMOOTHING;
+        errorY *= SMOOTHING;
+
+        // Standing still costs nothing once the server has seen us stop
+        if (buttons == 0 && lastButtons == 0) return;
+        lastButtons = buttons;
+
+        player.applyInput(buttons);
+        pending.addLast(new PendingInput(nextSequence++, (byte) buttons));
+        if (pending.size() > MAX_PENDING) {
+            pending.pollFirst();
+        }
+        sender.accept(buildInput());
+    }
+
+    private InputData buildInput() {
+        int count = Math.min(REDUNDANT_FRAMES, pending.size());
+        byte[] buttons = new byte[count];
+        Iterator<PendingInput> newestFirst = pending.descendingIterator();
+        for (int i = count - 1; i >= 0; i--) {
+            buttons[i] = newestFirst.next().buttons;
+        }
+        return new InputData(playerId, pending.peekLast().sequence, buttons);
+    }
+
+    // Called from the network thread with the local player's entry from a
+    // server snapshot; applied at the start of the next frame
+    public void onServerState(PlayerUpdateData authoritative) {
+        latestAuthoritative.set(authoritative);
+    }
+
+    private void reconcile(PlayerUpdateData authoritative) {
+        if (authoritative.position == null) return;
+
+        while (!pending.isEmpty() && pending.peekFirst().sequence <= authoritative.lastInput) {
+            pending.pollFirst();
+        }
+
+        double shownX = player.getX() + errorX;
+        double shownY = player.getY() + errorY;
+
+        player.setPosition(authoritative.position.x, authoritative.position.y);
+        for (PendingInput input : pending) {
+            player.applyInput(input.buttons);
+        }
+
+        double dx = shownX - player.getX();
+        double dy = shownY - player.getY();
+        double distance = Math.hypot(dx, dy);
+        if (distance > 0.01) {
+            corrections++;
+            lastCorrection = distance;
+        }
+        if (distance > SNAP_DISTANCE) {
+            errorX = 0;
+            errorY = 0;
+        } else {
+            errorX = dx;
+            errorY = dy;
+        }
+    }
+
+    // Where to draw the local player: the predicted position plus what is left
+    // of the last correction
+    public Point2D.Double getDisplayPosition() {
+        return new Point2D.Double(player.getX() + errorX, player.getY() + errorY);
+    }
+
+    // The same, alpha of the way from the previous tick's position to the
+    // current one, for frames drawn between fixed simulation steps
+    public Point2D.Double getDisplayPosition(double alpha) {
+        double x = player.getX() + errorX;
+        double y = player.getY() + errorY;
+        if (Double.isNaN(previousShownX)) {
+            return new Point2D.Double(x, y);
+        }
+        return new Point2D.Double(
+                previousShownX + (x - previousShownX) * alpha,
+                previousShownY + (y - previousShownY) * alpha
+        );
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getCorrectionCount() {
+        return corrections;
+    }
+
+    public double getLastCorrection() {
+        return lastCorrection;
+    }
+
+    private record PendingInput(long sequence, byte buttons) {
+    }
+}
@@ -2,4 +2,8 @@ package event;
 
 public interface NetworkEventListener {
     void onNetworkEvent(NetworkMessage message);
+
+    // After every heartbeat round trip
+    default void onLatencyUpdated(RttEstimator rtt) {
+    }
 }
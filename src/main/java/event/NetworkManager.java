@@ -2,18 +2,28 @@ package event;
 
 import java.net.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import com.google.gson.Gson;
 
 public class NetworkManager {
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
     private String playerId;
     private GameState gameState;
     private boolean isHost;
     private boolean isConnected;
+    private volatile String lobbyId; // requested, then the lobby the server placed us in
+    private volatile String host;
+    private volatile String sessionToken; // presented on reconnect to get our slot back
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private ExecutorStrategy executorStrategy;
 
     private ExecutorService messageProcessor;
     private BlockingQueue<NetworkMessage> messageQueue;
@@ -22,19 +32,57 @@ public class NetworkManager {
 
     private Gson gson;
 
+    // Wire codec: JSON until the server answers our CONNECT with a codec choice
+    private MessageCodecs codecs;
+    private volatile MessageCodec codec;
+    private boolean codecNegotiated;
+    private List<NetworkMessage> pendingUntilNegotiated;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Writes are buffered; they are flushed per send, once per dispatch of received
+    // messages, or every flushIntervalMillis when an interval is set
+    private volatile long flushIntervalMillis;
+    private volatile Thread dispatchThread;
+    private ScheduledExecutorService flushScheduler;
+    private ScheduledFuture<?> scheduledFlush;
+
+    // Snapshots rebuilt from server deltas, so later deltas can be applied to any acked tick
+    private final WorldSnapshot.History receivedSnapshots = new WorldSnapshot.History(SNAPSHOT_HISTORY);
+    private long latestSnapshotTick = -1; // dispatch thread only
+
+    // UDP side channel for position updates, snapshots and acks, if the server offers one
+    private boolean datagramEnabled = true;
+    private volatile DatagramChannel datagramChannel;
+    private volatile long datagramToken;
+    private final AtomicLong datagramSendSequence = new AtomicLong();
+
+    // Round-trip time to the server, measured by answering its PINGs with a PING of our own
+    private final RttEstimator rtt = new RttEstimator();
+
     // Constants
     private static final int PORT = 8080;
-    private static final int RECONNECT_DELAY = 5000; // 5 seconds
-    private static final int MAX_RECONNECT_ATTEMPTS = 3;
+    private static final int RECONNECT_DELAY = 5000; // 5 seconds, the longest wait between attempts
+    private static final int FIRST_RECONNECT_DELAY = 50;
+    private static final int MAX_RECONNECT_ATTEMPTS = 10;
+    private static final int SNAPSHOT_HISTORY = 64;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
 
     public NetworkManager(String playerId, boolean isHost) {
+        this(playerId, isHost, ExecutorStrategy.PLATFORM);
+    }
+
+    public NetworkManager(String playerId, boolean isHost, ExecutorStrategy executorStrategy) {
         this.playerId = playerId;
+        this.executorStrategy = executorStrategy;
         this.isHost = isHost;
         this.gameState = new GameState();
         this.messageQueue = new LinkedBlockingQueue<>();
         this.eventListeners = new ArrayList<>();
         this.playerStates = new ConcurrentHashMap<>();
         this.gson = new Gson();
+        this.codecs = new MessageCodecs();
+        this.codec = codecs.json();
+        this.pendingUntilNegotiated = new ArrayList<>();
 
         initializeNetworking();
     }
@@ -48,14 +96,22 @@ public class NetworkManager {
         }
     }
 
+    // Joins the given lobby, creating it if it does not exist yet
+    public void connect(String host, String lobbyId) {
+        this.lobbyId = lobbyId;
+        connect(host);
+    }
+
+    // Reconnects go back to the lobby we were placed in last time
     public void connect(String host) {
+        this.host = host;
         try {
             socket = new Socket(host, PORT);
             setupStreams();
             isConnected = true;
 
             // Start message receiver
-            new Thread(this::receiveMessages).start();
+            executorStrategy.startThread("network-receiver", this::receiveMessages);
 
             // Send initial connection message
             sendConnectionMessage();
@@ -66,7 +122,7 @@ public class NetworkManager {
     }
 
     private void startServer() {
-        new Thread(() -> {
+        executorStrategy.startThread("network-host-acceptor", () -> {
             try (ServerSocket serverSocket = new ServerSocket(PORT)) {
                 while (true) {
                     Socket clientSocket = serverSocket.accept();
@@ -75,24 +131,43 @@ public class NetworkManager {
             } catch (IOException e) {
                 e.printStackTrace();
             }
-        }).start();
+        });
     }
 
     private void setupStreams() throws IOException {
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        socket.setTcpNoDelay(true);
+        out = new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER_SIZE);
+        in = new BufferedInputStream(socket.getInputStream());
+        closeDatagramChannel(); // the new session hands out a new token
+
+        // Every new connection starts over in JSON
+        writeLock.lock();
+        try {
+            codec = codecs.json();
+            codecNegotiated = false;
+            pendingUntilNegotiated.clear();
+            // Snapshots are kept: a resumed session continues from the last one
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     private void handleNewConnection(Socket clientSocket) {
         // Create new client handler thread
         ClientHandler handler = new ClientHandler(clientSocket, this);
-        new Thread(handler).start();
+        executorStrategy.startThread("client-handler", handler);
     }
 
     private void sendConnectionMessage() {
+        ConnectionData data = new ConnectionData(playerId, isHost);
+        data.codecs = MessageCodecs.supportedNames();
+        data.lobbyId = lobbyId;
+        data.sessionToken = sessionToken;
+        data.resumeTick = sessionToken != null ? latestSnapshotTick : -1;
+
         NetworkMessage message = new NetworkMessage(
                 NetworkMessage.Type.CONNECT,
-                new ConnectionData(playerId, isHost)
+                data
         );
         sendMessage(message);
     }
@@ -100,31 +175,221 @@ public class NetworkManager {
     public void sendMessage(NetworkMessage message) {
         if (!isConnected) return;
 
+        if (datagramChannel != null && DatagramTransport.isUnreliable(message.getType())
+                && sendDatagram(codec.encode(message))) {
+            return;
+        }
+
+        writeLock.lock();
         try {
-            String jsonMessage = gson.toJson(message);
-            out.println(jsonMessage);
+            // Hold everything but CONNECT until the server has picked a codec
+            if (!codecNegotiated && message.getType() != NetworkMessage.Type.CONNECT) {
+                pendingUntilNegotiated.add(message);
+                return;
+            }
+            writeFrame(message);
         } catch (Exception e) {
             handleSendError(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Caller holds writeLock. Messages sent while dispatching received ones are
+    // flushed together once the dispatch queue is drained.
+    private void writeFrame(NetworkMessage message) throws IOException {
+        out.write(codec.encode(message));
+        if (flushIntervalMillis == 0 && Thread.currentThread() != dispatchThread) {
+            out.flush();
+        }
+    }
+
+    // Pushes out everything buffered so far; callers that send several messages
+    // per frame can set a flush interval and call this once per frame instead
+    public void flush() {
+        if (!isConnected) return;
+
+        writeLock.lock();
+        try {
+            if (out != null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            handleSendError(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // 0 flushes on every send; otherwise buffered writes go out at this interval
+    public synchronized void setFlushInterval(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must not be negative");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (flushIntervalMillis > 0) {
+            if (flushScheduler == null) {
+                flushScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "network-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            scheduledFlush = flushScheduler.scheduleAtFixedRate(
+                    this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        flush();
+    }
+
+    // Falls back to TCP if the frame is too big for one datagram or the send fails
+    private boolean sendDatagram(byte[] frame) {
+        DatagramChannel channel = datagramChannel;
+        if (channel == null || frame.length + DatagramTransport.HEADER_SIZE > DatagramTransport.MAX_DATAGRAM_SIZE) {
+            return false;
+        }
+        try {
+            channel.write(DatagramTransport.packet(datagramToken, datagramSendSequence.incrementAndGet(), frame));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Clients that only want TCP, e.g. behind a firewall that drops UDP, turn this off before connecting
+    public void setDatagramEnabled(boolean datagramEnabled) {
+        this.datagramEnabled = datagramEnabled;
+    }
+
+    private void openDatagramChannel(int port, long token) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.connect(new InetSocketAddress(socket.getInetAddress(), port));
+            datagramToken = token;
+            datagramChannel = channel;
+
+            executorStrategy.startThread("network-datagram-receiver", () -> receiveDatagrams(channel, token));
+
+            // Lets the server learn our address before we have anything to send
+            sendDatagram(new byte[0]);
+        } catch (IOException e) {
+            // Stay on TCP only
+            closeDatagramChannel();
+        }
+    }
+
+    private void receiveDatagrams(DatagramChannel channel, long token) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DatagramTransport.MAX_DATAGRAM_SIZE);
+        long lastSequence = 0;
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() < DatagramTransport.HEADER_SIZE || buffer.getLong() != token) continue;
+
+                // Reordered datagrams carry older state than what we already have
+                long sequence = buffer.getLong();
+                if (sequence <= lastSequence) continue;
+                lastSequence = sequence;
+
+                NetworkMessage message = codec.decode(buffer);
+                if (message != null && DatagramTransport.isUnreliable(message.getType())) {
+                    messageQueue.put(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                // A closed channel ends the loop; a bad datagram is just skipped
+            }
+        }
+    }
+
+    private void closeDatagramChannel() {
+        DatagramChannel channel = datagramChannel;
+        datagramChannel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    // Runs on the receiver thread, before the next frame is decoded
+    private void handleConnectFrame(NetworkMessage message) {
+        ConnectionData data = (ConnectionData) message.getData();
+        PlayerIndexTable indexTable = codecs.getIndexTable();
+
+        if (data.knownPlayers != null) {
+            for (int i = 0; i < data.knownPlayers.length; i++) {
+                if (data.knownPlayers[i] != null) {
+                    indexTable.register(data.knownPlayers[i], i);
+                }
+            }
+        }
+        if (data.playerIndex != null) {
+            indexTable.register(data.playerId, data.playerIndex);
+        }
+
+        // The server's answer to our own CONNECT switches codecs in both directions
+        if (data.codec != null && playerId.equals(data.playerId)) {
+            writeLock.lock();
+            try {
+                MessageCodec negotiated = codecs.byName(data.codec);
+                codec = negotiated != null ? negotiated : codecs.json();
+                codecNegotiated = true;
+
+                // A fresh session starts from a full snapshot; a resumed one
+                // gets a delta against the tick we sent
+                sessionToken = data.sessionToken;
+                if (!data.resumed) {
+                    receivedSnapshots.clear();
+                    latestSnapshotTick = -1;
+                }
+
+                if (data.datagramPort != null && datagramEnabled) {
+                    openDatagramChannel(data.datagramPort, data.datagramToken);
+                }
+
+                for (NetworkMessage pending : pendingUntilNegotiated) {
+                    writeFrame(pending);
+                }
+                pendingUntilNegotiated.clear();
+            } catch (IOException e) {
+                handleSendError(e);
+            } finally {
+                writeLock.unlock();
+            }
         }
     }
 
     private void receiveMessages() {
         while (isConnected) {
             try {
-                String jsonMessage = in.readLine();
-                if (jsonMessage == null) {
+                NetworkMessage message = codec.read(in);
+                if (message == null) {
                     handleDisconnection();
                     break;
                 }
 
-                NetworkMessage message = gson.fromJson(
-                        jsonMessage,
-                        NetworkMessage.class
-                );
+                if (message.getType() == NetworkMessage.Type.CONNECT) {
+                    handleConnectFrame(message);
+                }
                 messageQueue.put(message);
 
             } catch (IOException e) {
                 handleReceiveError(e);
+                // A reset connection is a drop like any other: try to resume
+                if (isConnected) {
+                    handleDisconnection();
+                }
                 break;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -134,10 +399,16 @@ public class NetworkManager {
     }
 
     private void processMessages() {
+        dispatchThread = Thread.currentThread();
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 NetworkMessage message = messageQueue.take();
                 handleMessage(message);
+
+                // Acks and replies from a burst of messages share one flush
+                if (messageQueue.isEmpty() && flushIntervalMillis == 0) {
+                    flush();
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -147,6 +418,12 @@ public class NetworkManager {
 
     private void handleMessage(NetworkMessage message) {
         switch (message.getType()) {
+            case PING:
+                handlePing(message);
+                return;
+            case PONG:
+                handlePong(message);
+                return;
             case CONNECT:
                 handleConnect(message);
                 break;
@@ -156,6 +433,9 @@ public class NetworkManager {
             case PLAYER_UPDATE:
                 handlePlayerUpdate(message);
                 break;
+            case SNAPSHOT:
+                handleGameState(message);
+                break;
             case GAME_STATE:
                 handleGameState(message);
                 break;
@@ -183,9 +463,32 @@ public class NetworkManager {
         notifyEventListeners(message);
     }
 
+    // The server's heartbeat drives ours: echo its PING, then time a PING of
+    // our own, so the client needs no timer to know its latency
+    private void handlePing(NetworkMessage message) {
+        sendMessage(new NetworkMessage(NetworkMessage.Type.PONG, message.getData()));
+        sendMessage(new NetworkMessage(NetworkMessage.Type.PING, System.nanoTime()));
+    }
+
+    private void handlePong(NetworkMessage message) {
+        if (!(message.getData() instanceof Long sentNanos)) return;
+
+        rtt.onPong(sentNanos);
+        for (NetworkEventListener listener : eventListeners) {
+            listener.onLatencyUpdated(rtt);
+        }
+    }
+
+    public RttEstimator getRtt() {
+        return rtt;
+    }
+
     private void handleConnect(NetworkMessage message) {
         ConnectionData data = (ConnectionData) message.getData();
         playerStates.put(data.playerId, new PlayerState());
+        if (data.lobbyId != null && playerId.equals(data.playerId)) {
+            lobbyId = data.lobbyId;
+        }
 
         if (isHost) {
             // Send current game state to new player
@@ -209,10 +512,60 @@ public class NetworkManager {
     }
 
     private void handleGameState(NetworkMessage message) {
+        if (message.getData() instanceof SnapshotData snapshot) {
+            applySnapshot(snapshot);
+            return;
+        }
         GameState newState = (GameState) message.getData();
         gameState.update(newState);
     }
 
+    // Rebuilds full state from a delta against a snapshot we acknowledged, then
+    // acks the result so the next delta can be smaller
+    private void applySnapshot(SnapshotData snapshot) {
+        // Snapshots come over both UDP and TCP, so an older one can arrive late
+        if (snapshot.tick <= latestSnapshotTick) return;
+
+        WorldSnapshot base = receivedSnapshots.get(snapshot.baseTick);
+        if (base == null) {
+            // Base no longer held: ask for a full snapshot instead
+            sendMessage(new NetworkMessage(NetworkMessage.Type.STATE_ACK, -1L));
+            return;
+        }
+        receivedSnapshots.put(base.apply(snapshot));
+        latestSnapshotTick = snapshot.tick;
+
+        if (snapshot.removed != null) {
+            for (String removedId : snapshot.removed) {
+                playerStates.remove(removedId);
+            }
+        }
+        for (PlayerUpdateData data : snapshot.updates) {
+            PlayerState state = playerStates.computeIfAbsent(data.playerId, id -> new PlayerState());
+            state.playerId = data.playerId;
+            state.update(data);
+            state.isDead = data.isDead;
+        }
+        if (snapshot.phase != null) {
+            gameState.setCurrentPhase(snapshot.phase);
+        }
+        if (snapshot.completedTasks != null) {
+            for (TaskData task : snapshot.completedTasks) {
+                gameState.completeTask(task);
+            }
+        }
+        if (snapshot.votes != null) {
+            for (VoteData vote : snapshot.votes) {
+                gameState.registerVote(vote);
+            }
+        }
+        if (snapshot.sabotage != null) {
+            gameState.syncSabotage(snapshot.sabotage);
+        }
+
+        sendMessage(new NetworkMessage(NetworkMessage.Type.STATE_ACK, snapshot.tick));
+    }
+
     private void handleChat(NetworkMessage message) {
         ChatMessage chatMessage = (ChatMessage) message.getData();
         notifyEventListeners(message);
@@ -258,9 +611,10 @@ public class NetworkManager {
 
     public void broadcastMessage(NetworkMessage message) {
         if (isHost) {
-            // Send to all connected clients
+            // Send to all connected clients, encoding the message only once
+            EncodedMessage encoded = EncodedMessage.of(message);
             for (ClientHandler handler : getClientHandlers()) {
-                handler.sendMessage(message);
+                handler.sendEncoded(encoded);
             }
         } else {
             // Send to server
@@ -304,20 +658,28 @@ public class NetworkManager {
         attemptReconnect();
     }
 
+    // The server holds our slot for a while, so the first attempt goes out at
+    // once and later ones back off; a resumed session carries on mid-game
     private void attemptReconnect() {
-        new Thread(() -> {
-            for (int i = 0; i < MAX_RECONNECT_ATTEMPTS; i++) {
-                try {
-                    Thread.sleep(RECONNECT_DELAY);
-                    connect(socket.getInetAddress().getHostAddress());
+        if (host == null || !reconnecting.compareAndSet(false, true)) return;
+
+        executorStrategy.startThread("network-reconnect", () -> {
+            try {
+                long delay = FIRST_RECONNECT_DELAY;
+                for (int i = 0; i < MAX_RECONNECT_ATTEMPTS; i++) {
+                    connect(host);
                     if (isConnected) {
                         break;
                     }
-                } catch (Exception e) {
-                    // Continue trying
+                    Thread.sleep(delay);
+                    delay = Math.min(delay * 2, RECONNECT_DELAY);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                reconnecting.set(false);
             }
-        }).start();
+        });
     }
 
     public void addEventListener(NetworkEventListener listener) {
@@ -340,8 +702,20 @@ public class NetworkManager {
     }
 
     public void shutdown() {
+        // Leaving on purpose: tell the server not to hold our slot
+        if (isConnected && !isHost) {
+            sendMessage(new NetworkMessage(NetworkMessage.Type.DISCONNECT, playerId));
+            flush();
+        }
+        sessionToken = null;
         isConnected = false;
         messageProcessor.shutdown();
+        closeDatagramChannel();
+        synchronized (this) {
+            if (flushScheduler != null) {
+                flushScheduler.shutdownNow();
+            }
+        }
 
         try {
             if (socket != null) {
@@ -359,8 +733,11 @@ public class NetworkManager {
     }
 
     // Getters
+    public MessageCodecs getCodecs() { return codecs; }
     public boolean isConnected() { return isConnected; }
     public boolean isHost() { return isHost; }
     public String getPlayerId() { return playerId; }
+    public String getLobbyId() { return lobbyId; }
     public GameState getGameState() { return gameState; }
+    public ExecutorStrategy getExecutorStrategy() { return executorStrategy; }
 }
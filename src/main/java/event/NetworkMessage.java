@@ -2,6 +2,7 @@ package event;
 
 import java.awt.geom.Point2D;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 
 public class NetworkMessage implements Serializable {
@@ -12,8 +13,14 @@ public class NetworkMessage implements Serializable {
     public enum Type {
         CONNECT,
         DISCONNECT,
+        PING,   // data: the sender's System.nanoTime() at send
+        PONG,   // data: the PING's value, echoed unchanged
         PLAYER_UPDATE,
+        PLAYER_INPUT,
+        SNAPSHOT,
+        STATE_ACK,
         GAME_STATE,
+        GAME_END,
         CHAT,
         EMERGENCY_MEETING,
         VOTE,
@@ -29,6 +36,13 @@ public class NetworkMessage implements Serializable {
         this.timestamp = System.currentTimeMillis();
     }
 
+    // Used by codecs to restore the sender's timestamp
+    NetworkMessage(Type type, Object data, long timestamp) {
+        this.type = type;
+        this.data = data;
+        this.timestamp = timestamp;
+    }
+
     // Getters
     public Type getType() { return type; }
     public Object getData() { return data; }
@@ -42,6 +56,29 @@ class ConnectionData implements Serializable {
     String playerName;
     java.awt.Color playerColor;
 
+    // Codec negotiation: the client offers codecs in order of preference,
+    // the server answers with the chosen codec and the player's wire index
+    String[] codecs;
+    String codec;
+    Integer playerIndex;
+    String[] knownPlayers;  // index -> playerId, sent with the server's answer
+
+    // Lobby the client asks to join (null = any open lobby); the server's
+    // announcement carries the lobby the player actually joined
+    String lobbyId;
+
+    // UDP side channel offered in the server's answer; the client proves it owns
+    // the session by putting the token in every datagram it sends
+    Integer datagramPort;
+    long datagramToken;
+
+    // Session resumption: the server's answer carries a token; a reconnecting
+    // client sends it back with the last snapshot tick it holds, and the answer
+    // says whether it got its old slot back
+    String sessionToken;
+    long resumeTick = -1;
+    boolean resumed;
+
     public ConnectionData(String playerId, boolean isHost) {
         this.playerId = playerId;
         this.isHost = isHost;
@@ -54,6 +91,8 @@ class PlayerUpdateData implements Serializable {
     boolean isMoving;
     boolean isInVent;
     String currentRoom;
+    boolean isDead;   // only meaningful in server snapshots
+    long lastInput;   // server snapshots: last PLAYER_INPUT sequence applied, 0 = none
 
     public PlayerUpdateData(String playerId, Point2D.Double position) {
         this.playerId = playerId;
@@ -61,6 +100,45 @@ class PlayerUpdateData implements Serializable {
     }
 }
 
+// Movement commands, one byte of Player.INPUT_* bits per client frame. Each
+// message repeats the last few unacknowledged frames so a lost datagram costs
+// nothing; the server skips frames it has already applied.
+class InputData implements Serializable {
+    String playerId;
+    long sequence;    // sequence number of the last frame in buttons
+    byte[] buttons;   // oldest first
+
+    public InputData(String playerId, long sequence, byte[] buttons) {
+        this.playerId = playerId;
+        this.sequence = sequence;
+        this.buttons = buttons;
+    }
+}
+
+// One server tick of replicated state. With baseTick < 0 it is complete;
+// otherwise it only holds what changed since the tick the client last
+// acknowledged with STATE_ACK. Optional sections are null when unchanged.
+class SnapshotData implements Serializable {
+    long tick;
+    long baseTick = -1;
+    List<PlayerUpdateData> updates;   // players added or changed
+    List<String> removed;             // players gone since the base
+    GameState.GamePhase phase;
+    List<TaskData> completedTasks;
+    List<VoteData> votes;
+    SabotageData sabotage;            // isFixed once the sabotage is over
+
+    public SnapshotData(long tick, List<PlayerUpdateData> updates) {
+        this.tick = tick;
+        this.updates = updates;
+    }
+
+    public boolean isEmpty() {
+        return updates.isEmpty() && removed == null && phase == null
+                && completedTasks == null && votes == null && sabotage == null;
+    }
+}
+
 class GameState implements Serializable {
     Map<String, PlayerState> players;
     GamePhase currentPhase;
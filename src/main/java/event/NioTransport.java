@@ -0,0 +1,367 @@
+package event;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NioTransport {
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+    private static final int MAX_READ_BUFFER = 2 * 1024 * 1024; // codecs cap frames at 1 MB
+    private static final int MAX_GATHER = 64; // frames handed to a single gathering write
+
+    private final GameServer server;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop;
+    private volatile boolean isRunning;
+
+    public NioTransport(GameServer server, int port, int ioThreads) throws IOException {
+        this.server = server;
+        this.loops = new EventLoop[ioThreads];
+        this.nextLoop = new AtomicInteger();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    public void start() {
+        isRunning = true;
+
+        // The first loop also owns the listening socket
+        loops[0].execute(() -> {
+            try {
+                serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                System.err.println("Could not register acceptor: " + e.getMessage());
+            }
+        });
+
+        for (EventLoop loop : loops) {
+            Thread thread = new Thread(loop, "nio-loop-" + loop.index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server channel: " + e.getMessage());
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(server.getConfig().isTcpNoDelay());
+
+                // Spread connections across loops round-robin
+                EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+                SocketChannel accepted = channel;
+                loop.execute(() -> loop.register(accepted));
+            }
+        } catch (IOException e) {
+            if (isRunning) {
+                System.err.println("Error accepting client: " + e.getMessage());
+            }
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final int index;
+        private final Selector selector;
+        private final Queue<Runnable> tasks;
+
+        EventLoop(int index) throws IOException {
+            this.index = index;
+            this.selector = Selector.open();
+            this.tasks = new ConcurrentLinkedQueue<>();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(SocketChannel channel) {
+            Connection connection = new Connection(this, channel);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (ClosedChannelException e) {
+                return;
+            }
+
+            connection.handler = server.acceptNioClient(connection);
+            if (connection.handler == null) {
+                connection.closeAfterFlush();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                try {
+                    selector.select();
+                    runTasks();
+                    processSelectedKeys();
+                } catch (IOException e) {
+                    System.err.println("Event loop error: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    // Last resort: this thread serves every connection on the
+                    // loop (and loop 0 the acceptor), so it must not die
+                    System.err.println("Unexpected event loop error: " + e);
+                    e.printStackTrace();
+                }
+            }
+            closeAll();
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void processSelectedKeys() {
+            Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                if (!key.isValid()) continue;
+
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                Connection connection = (Connection) key.attachment();
+                if (key.isReadable()) {
+                    connection.read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            }
+        }
+
+        private void closeAll() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+
+    public class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final Queue<ByteBuffer> pendingWrites;
+        private final AtomicBoolean flushScheduled;
+        private final ByteBuffer[] batch;  // frames of the current gathering write
+        private int batchStart;
+        private int batchEnd;
+        private SelectionKey key;
+        private ClientHandler handler;
+        private ByteBuffer readBuffer;
+        private boolean closeWhenFlushed;
+        private volatile boolean isOpen;
+
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+            this.pendingWrites = new ConcurrentLinkedQueue<>();
+            this.flushScheduled = new AtomicBoolean();
+            this.batch = new ByteBuffer[MAX_GATHER];
+            this.readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+            this.isOpen = true;
+        }
+
+        // Safe to call from any thread; the bytes are written by the owning loop
+        public void write(ByteBuffer data) {
+            if (!isOpen) return;
+
+            pendingWrites.add(data);
+            requestFlush();
+        }
+
+        // The handler queued frames; at most one flush task is pending at a time
+        void requestFlush() {
+            if (isOpen && flushScheduled.compareAndSet(false, true)) {
+                loop.execute(this::scheduledFlush);
+            }
+        }
+
+        private void scheduledFlush() {
+            flushScheduled.set(false);
+            flush();
+        }
+
+        public void close() {
+            if (!isOpen) return;
+            isOpen = false;
+
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing channel: " + e.getMessage());
+            }
+            pendingWrites.clear();
+            Arrays.fill(batch, null);
+            batchStart = batchEnd = 0;
+
+            if (handler != null) {
+                handler.onConnectionClosed();
+            }
+        }
+
+        public void closeAfterFlush() {
+            closeWhenFlushed = true;
+            requestFlush();
+        }
+
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        private void read() {
+            try {
+                int bytesRead = channel.read(readBuffer);
+                if (bytesRead < 0) {
+                    close();
+                    return;
+                }
+                decodeFrames();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        // Framing is up to the handler's negotiated codec: newline-delimited JSON
+        // or length-prefixed binary frames
+        private void decodeFrames() {
+            readBuffer.flip();
+
+            if (handler == null) {
+                // Rejected client, discard whatever it sends until the close
+                readBuffer.clear();
+                return;
+            }
+
+            try {
+                while (isOpen) {
+                    NetworkMessage message = handler.decodeFrame(readBuffer);
+                    if (message == null) break;
+                    handler.handleIncoming(message);
+                }
+            } catch (IOException e) {
+                System.err.println("Malformed frame, closing connection: " + e.getMessage());
+                close();
+            } catch (RuntimeException e) {
+                // A frame the handler chokes on costs only this connection
+                System.err.println("Error handling frame, closing connection: " + e);
+                close();
+            }
+            if (!isOpen) return;
+
+            readBuffer.compact();
+
+            if (!readBuffer.hasRemaining()) {
+                growReadBuffer();
+            }
+        }
+
+        private void growReadBuffer() {
+            if (readBuffer.capacity() >= MAX_READ_BUFFER) {
+                System.err.println("Frame too large, closing connection");
+                close();
+                return;
+            }
+
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, MAX_READ_BUFFER));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+
+        // Frames stay in the handler's bounded queue until the socket can take
+        // them, so a stalled client backs up there rather than in memory here.
+        // Whatever is queued goes out in one gathering write per pass.
+        private void flush() {
+            if (!isOpen || key == null || !key.isValid()) return;
+
+            try {
+                while (batchStart < batchEnd || fillBatch()) {
+                    channel.write(batch, batchStart, batchEnd - batchStart);
+                    while (batchStart < batchEnd && !batch[batchStart].hasRemaining()) {
+                        batch[batchStart++] = null;
+                    }
+                    if (handler != null) {
+                        handler.onFlushed();
+                    }
+                    if (batchStart < batchEnd) {
+                        // Socket send buffer is full, wait for OP_WRITE
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (closeWhenFlushed) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private boolean fillBatch() {
+            batchStart = 0;
+            batchEnd = 0;
+            while (batchEnd < batch.length) {
+                ByteBuffer buffer = pendingWrites.poll();
+                if (buffer == null && handler != null) {
+                    byte[] frame = handler.pollOutbound();
+                    buffer = frame != null ? ByteBuffer.wrap(frame) : null;
+                }
+                if (buffer == null) break;
+                batch[batchEnd++] = buffer;
+            }
+            return batchEnd > 0;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package event;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded per-client queue of encoded frames between the threads that produce
+// messages and the single writer that owns the socket. Producers never block:
+// when the client falls behind, the overflow policy decides whether frames are
+// coalesced, dropped, or the client has to go.
+public class OutboundQueue {
+    private final ServerConfig.OverflowPolicy policy;
+    private final int capacity;
+    private final long maxLagNanos;
+    private final ArrayDeque<Entry> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed;
+
+    // Metrics
+    private int highWaterMark;
+    private long enqueuedCount;
+    private long coalescedCount;
+    private long droppedCount;
+
+    public OutboundQueue(ServerConfig.OverflowPolicy policy, int capacity, long maxLagMillis) {
+        this.policy = policy;
+        this.capacity = capacity;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        this.entries = new ArrayDeque<>(Math.min(capacity, 64));
+    }
+
+    // coalesceKey marks frames that a newer frame with the same key fully replaces,
+    // or null if the frame must be delivered. Returns false if the client should
+    // be disconnected as a slow consumer.
+    public boolean offer(byte[] frame, String coalesceKey) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (closed) return true;
+
+            if (coalesceKey != null && policy == ServerConfig.OverflowPolicy.COALESCE
+                    && replaceQueued(frame, coalesceKey)) {
+                coalescedCount++;
+                return true;
+            }
+
+            if (policy == ServerConfig.OverflowPolicy.DISCONNECT && isLagging(now)) {
+                return false;
+            }
+
+            if (entries.size() >= capacity) {
+                if (policy != ServerConfig.OverflowPolicy.DROP_OLDEST) {
+                    return false;
+                }
+                entries.pollFirst();
+                droppedCount++;
+            }
+
+            entries.addLast(new Entry(frame, coalesceKey, now));
+            enqueuedCount++;
+            highWaterMark = Math.max(highWaterMark, entries.size());
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Keeps the superseded frame's place in line so it is not delayed further
+    private boolean replaceQueued(byte[] frame, String coalesceKey) {
+        Iterator<Entry> iterator = entries.descendingIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (coalesceKey.equals(entry.coalesceKey)) {
+                entry.frame = frame;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLagging(long now) {
+        Entry oldest = entries.peekFirst();
+        return oldest != null && now - oldest.enqueuedAt > maxLagNanos;
+    }
+
+    // Non-blocking, for the NIO event loop
+    public byte[] poll() {
+        lock.lock();
+        try {
+            Entry entry = entries.pollFirst();
+            return entry != null ? entry.frame : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks the writer until a frame is queued; null once the queue is closed
+    public byte[] take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (entries.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            Entry entry = entries.pollFirst();
+            return entry != null ? entry.frame : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits up to timeoutNanos for a frame; null on timeout or once closed
+    public byte[] poll(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (entries.isEmpty() && !closed && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            Entry entry = entries.pollFirst();
+            return entry != null ? entry.frame : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            entries.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // How long the frame at the head has been waiting, 0 if the queue is empty
+    public long oldestAgeMillis() {
+        lock.lock();
+        try {
+            Entry oldest = entries.peekFirst();
+            return oldest != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedAt) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+    public ServerConfig.OverflowPolicy getPolicy() { return policy; }
+
+    public int getHighWaterMark() {
+        lock.lock();
+        try {
+            return highWaterMark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEnqueuedCount() {
+        lock.lock();
+        try {
+            return enqueuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCoalescedCount() {
+        lock.lock();
+        try {
+            return coalescedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Entry {
+        byte[] frame;
+        final String coalesceKey;
+        final long enqueuedAt;
+
+        Entry(byte[] frame, String coalesceKey, long enqueuedAt) {
+            this.frame = frame;
+            this.coalesceKey = coalesceKey;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
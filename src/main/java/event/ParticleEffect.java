@@ -46,6 +46,14 @@ public class ParticleEffect {
         g2d.fill(new Ellipse2D.Double(x - size/2, y - size/2, size, size));
     }
 
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
     public boolean isFinished() {
         return age >= lifespan;
     }
@@ -0,0 +1,674 @@
+package event;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+// Maps each NetworkMessage.Type to its payload class and a pre-built Gson adapter,
+// so "data" is decoded straight into the concrete class in one streaming pass.
+// The hot payloads have hand-written adapters; only cold ones such as the full
+// GameState fall back to Gson's reflective adapter.
+public final class PayloadRegistry {
+    private static final Map<NetworkMessage.Type, Entry<?>> entries = new EnumMap<>(NetworkMessage.Type.class);
+
+    // Shared adapters for value types used inside payloads
+    private static final TypeAdapter<Point2D.Double> POINT_ADAPTER = new PointAdapter().nullSafe();
+    private static final TypeAdapter<Color> COLOR_ADAPTER = new ColorAdapter().nullSafe();
+
+    // Used for the reflective fallback and for the message envelope itself
+    private static final Gson baseGson = new GsonBuilder()
+            .registerTypeAdapter(Point2D.Double.class, POINT_ADAPTER)
+            .registerTypeAdapter(Color.class, COLOR_ADAPTER)
+            .create();
+    private static final Gson gson = baseGson.newBuilder()
+            .registerTypeAdapter(NetworkMessage.class, new MessageAdapter().nullSafe())
+            .create();
+
+    static {
+        register(NetworkMessage.Type.CONNECT, ConnectionData.class, new ConnectionDataAdapter());
+        register(NetworkMessage.Type.DISCONNECT, String.class, baseGson.getAdapter(String.class));
+        register(NetworkMessage.Type.PING, Long.class, baseGson.getAdapter(Long.class));
+        register(NetworkMessage.Type.PONG, Long.class, baseGson.getAdapter(Long.class));
+        register(NetworkMessage.Type.PLAYER_UPDATE, PlayerUpdateData.class, new PlayerUpdateAdapter());
+        register(NetworkMessage.Type.PLAYER_INPUT, InputData.class, new InputDataAdapter());
+        register(NetworkMessage.Type.SNAPSHOT, SnapshotData.class, new SnapshotDataAdapter());
+        register(NetworkMessage.Type.STATE_ACK, Long.class, baseGson.getAdapter(Long.class));
+        register(NetworkMessage.Type.GAME_STATE, GameState.class, baseGson.getAdapter(GameState.class));
+        register(NetworkMessage.Type.GAME_END, GameEndData.class, baseGson.getAdapter(GameEndData.class));
+        register(NetworkMessage.Type.CHAT, ChatMessage.class, new ChatMessageAdapter());
+        register(NetworkMessage.Type.EMERGENCY_MEETING, EmergencyData.class, new EmergencyDataAdapter());
+        register(NetworkMessage.Type.VOTE, VoteData.class, new VoteDataAdapter());
+        register(NetworkMessage.Type.TASK_COMPLETE, TaskData.class, new TaskDataAdapter());
+        register(NetworkMessage.Type.KILL, KillData.class, new KillDataAdapter());
+        register(NetworkMessage.Type.SABOTAGE, SabotageData.class, new SabotageDataAdapter());
+        register(NetworkMessage.Type.ERROR, String.class, baseGson.getAdapter(String.class));
+    }
+
+    private PayloadRegistry() {
+    }
+
+    public static <T> void register(NetworkMessage.Type type, Class<T> payloadClass, TypeAdapter<T> adapter) {
+        entries.put(type, new Entry<>(payloadClass, adapter.nullSafe()));
+    }
+
+    public static Class<?> payloadClass(NetworkMessage.Type type) {
+        Entry<?> entry = entries.get(type);
+        return entry != null ? entry.payloadClass : null;
+    }
+
+    // Gson that reads and writes whole NetworkMessages through the registry
+    public static Gson gson() {
+        return gson;
+    }
+
+    public static String toJson(NetworkMessage.Type type, Object data) {
+        try {
+            StringWriter writer = new StringWriter();
+            writeData(new JsonWriter(writer), type, data);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Object fromJson(NetworkMessage.Type type, String json) throws IOException {
+        try {
+            return readData(new JsonReader(new StringReader(json)), type);
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Malformed " + type + " payload: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeData(JsonWriter out, NetworkMessage.Type type, Object data) throws IOException {
+        Entry<?> entry = type != null ? entries.get(type) : null;
+        if (data == null) {
+            out.nullValue();
+        } else if (entry != null && entry.payloadClass.isInstance(data)) {
+            ((TypeAdapter<Object>) entry.adapter).write(out, data);
+        } else {
+            // Unregistered payload: correct on the wire, just not on the fast path
+            ((TypeAdapter<Object>) baseGson.getAdapter(data.getClass())).write(out, data);
+        }
+    }
+
+    private static Object readData(JsonReader in, NetworkMessage.Type type) throws IOException {
+        Entry<?> entry = type != null ? entries.get(type) : null;
+        if (entry == null) {
+            return baseGson.getAdapter(JsonElement.class).read(in);
+        }
+        return entry.adapter.read(in);
+    }
+
+    private record Entry<T>(Class<T> payloadClass, TypeAdapter<T> adapter) {
+    }
+
+    // Envelope: {"type":...,"data":...,"timestamp":...}. Writers always put type
+    // first, so data can be decoded directly; if another producer orders it
+    // differently the data object is buffered once as a tree.
+    private static class MessageAdapter extends TypeAdapter<NetworkMessage> {
+        @Override
+        public void write(JsonWriter out, NetworkMessage message) throws IOException {
+            out.beginObject();
+            out.name("type").value(message.getType() != null ? message.getType().name() : null);
+            out.name("data");
+            writeData(out, message.getType(), message.getData());
+            out.name("timestamp").value(message.getTimestamp());
+            out.endObject();
+        }
+
+        @Override
+        public NetworkMessage read(JsonReader in) throws IOException {
+            NetworkMessage.Type type = null;
+            Object data = null;
+            JsonElement deferredData = null;
+            long timestamp = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type" -> type = readEnum(in, NetworkMessage.Type.class);
+                    case "data" -> {
+                        if (type != null) {
+                            data = readData(in, type);
+                        } else {
+                            deferredData = JsonParser.parseReader(in);
+                        }
+                    }
+                    case "timestamp" -> timestamp = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (type == null) {
+                throw new JsonParseException("Message without type");
+            }
+            if (deferredData != null) {
+                Entry<?> entry = entries.get(type);
+                data = entry != null ? entry.adapter.fromJsonTree(deferredData) : deferredData;
+            }
+            return new NetworkMessage(type, data, timestamp);
+        }
+    }
+
+    private static class PointAdapter extends TypeAdapter<Point2D.Double> {
+        @Override
+        public void write(JsonWriter out, Point2D.Double point) throws IOException {
+            out.beginObject();
+            out.name("x").value(point.x);
+            out.name("y").value(point.y);
+            out.endObject();
+        }
+
+        @Override
+        public Point2D.Double read(JsonReader in) throws IOException {
+            Point2D.Double point = new Point2D.Double();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "x" -> point.x = in.nextDouble();
+                    case "y" -> point.y = in.nextDouble();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return point;
+        }
+    }
+
+    // java.awt.Color's fields are not reflectively accessible on modern JDKs
+    private static class ColorAdapter extends TypeAdapter<Color> {
+        @Override
+        public void write(JsonWriter out, Color color) throws IOException {
+            out.value(color.getRGB());
+        }
+
+        @Override
+        public Color read(JsonReader in) throws IOException {
+            return new Color(in.nextInt(), true);
+        }
+    }
+
+    private static class ConnectionDataAdapter extends TypeAdapter<ConnectionData> {
+        @Override
+        public void write(JsonWriter out, ConnectionData data) throws IOException {
+            out.beginObject();
+            out.name("playerId").value(data.playerId);
+            out.name("isHost").value(data.isHost);
+            writeOptional(out, "playerName", data.playerName);
+            if (data.playerColor != null) {
+                out.name("playerColor");
+                COLOR_ADAPTER.write(out, data.playerColor);
+            }
+            writeStrings(out, "codecs", data.codecs);
+            writeOptional(out, "codec", data.codec);
+            if (data.playerIndex != null) {
+                out.name("playerIndex").value(data.playerIndex);
+            }
+            writeStrings(out, "knownPlayers", data.knownPlayers);
+            writeOptional(out, "lobbyId", data.lobbyId);
+            if (data.datagramPort != null) {
+                out.name("datagramPort").value(data.datagramPort);
+                out.name("datagramToken").value(data.datagramToken);
+            }
+            writeOptional(out, "sessionToken", data.sessionToken);
+            if (data.resumeTick >= 0) {
+                out.name("resumeTick").value(data.resumeTick);
+            }
+            if (data.resumed) {
+                out.name("resumed").value(true);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ConnectionData read(JsonReader in) throws IOException {
+            ConnectionData data = new ConnectionData(null, false);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerId" -> data.playerId = readString(in);
+                    case "isHost" -> data.isHost = in.nextBoolean();
+                    case "playerName" -> data.playerName = readString(in);
+                    case "playerColor" -> data.playerColor = COLOR_ADAPTER.read(in);
+                    case "codecs" -> data.codecs = readStrings(in);
+                    case "codec" -> data.codec = readString(in);
+                    case "playerIndex" -> data.playerIndex = in.nextInt();
+                    case "knownPlayers" -> data.knownPlayers = readStrings(in);
+                    case "lobbyId" -> data.lobbyId = readString(in);
+                    case "datagramPort" -> data.datagramPort = in.nextInt();
+                    case "datagramToken" -> data.datagramToken = in.nextLong();
+                    case "sessionToken" -> data.sessionToken = readString(in);
+                    case "resumeTick" -> data.resumeTick = in.nextLong();
+                    case "resumed" -> data.resumed = in.nextBoolean();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    }
+
+    private static class PlayerUpdateAdapter extends TypeAdapter<PlayerUpdateData> {
+        @Override
+        public void write(JsonWriter out, PlayerUpdateData data) throws IOException {
+            out.beginObject();
+            out.name("playerId").value(data.playerId);
+            if (data.position != null) {
+                out.name("position");
+                POINT_ADAPTER.write(out, data.position);
+            }
+            out.name("isMoving").value(data.isMoving);
+            out.name("isInVent").value(data.isInVent);
+            writeOptional(out, "currentRoom", data.currentRoom);
+            if (data.isDead) {
+                out.name("isDead").value(true);
+            }
+            if (data.lastInput != 0) {
+                out.name("lastInput").value(data.lastInput);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public PlayerUpdateData read(JsonReader in) throws IOException {
+            PlayerUpdateData data = new PlayerUpdateData(null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerId" -> data.playerId = readString(in);
+                    case "position" -> data.position = POINT_ADAPTER.read(in);
+                    case "isMoving" -> data.isMoving = in.nextBoolean();
+                    case "isInVent" -> data.isInVent = in.nextBoolean();
+                    case "currentRoom" -> data.currentRoom = readString(in);
+                    case "isDead" -> data.isDead = in.nextBoolean();
+                    case "lastInput" -> data.lastInput = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    }
+
+    private static class InputDataAdapter extends TypeAdapter<InputData> {
+        @Override
+        public void write(JsonWriter out, InputData data) throws IOException {
+            out.beginObject();
+            out.name("playerId").value(data.playerId);
+            out.name("sequence").value(data.sequence);
+            out.name("buttons").beginArray();
+            for (byte buttons : data.buttons) {
+                out.value(buttons);
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public InputData read(JsonReader in) throws IOException {
+            InputData data = new InputData(null, 0, new byte[0]);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerId" -> data.playerId = readString(in);
+                    case "sequence" -> data.sequence = in.nextLong();
+                    case "buttons" -> {
+                        ByteArrayOutputStream buttons = new ByteArrayOutputStream();
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            buttons.write(in.nextInt());
+                        }
+                        in.endArray();
+                        data.buttons = buttons.toByteArray();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    }
+
+    private static class SnapshotDataAdapter extends TypeAdapter<SnapshotData> {
+        private static final PlayerUpdateAdapter UPDATE_ADAPTER = new PlayerUpdateAdapter();
+        private static final TaskDataAdapter TASK_ADAPTER = new TaskDataAdapter();
+        private static final VoteDataAdapter VOTE_ADAPTER = new VoteDataAdapter();
+        private static final SabotageDataAdapter SABOTAGE_ADAPTER = new SabotageDataAdapter();
+
+        @Override
+        public void write(JsonWriter out, SnapshotData snapshot) throws IOException {
+            out.beginObject();
+            out.name("tick").value(snapshot.tick);
+            out.name("baseTick").value(snapshot.baseTick);
+            out.name("updates");
+            writeList(out, snapshot.updates, UPDATE_ADAPTER);
+            if (snapshot.removed != null) {
+                writeStrings(out, "removed", snapshot.removed.toArray(new String[0]));
+            }
+            if (snapshot.phase != null) {
+                out.name("phase").value(snapshot.phase.name());
+            }
+            if (snapshot.completedTasks != null) {
+                out.name("completedTasks");
+                writeList(out, snapshot.completedTasks, TASK_ADAPTER);
+            }
+            if (snapshot.votes != null) {
+                out.name("votes");
+                writeList(out, snapshot.votes, VOTE_ADAPTER);
+            }
+            if (snapshot.sabotage != null) {
+                out.name("sabotage");
+                SABOTAGE_ADAPTER.write(out, snapshot.sabotage);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public SnapshotData read(JsonReader in) throws IOException {
+            SnapshotData snapshot = new SnapshotData(0, new ArrayList<>());
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "tick" -> snapshot.tick = in.nextLong();
+                    case "baseTick" -> snapshot.baseTick = in.nextLong();
+                    case "updates" -> snapshot.updates = readList(in, UPDATE_ADAPTER);
+                    case "removed" -> {
+                        String[] removed = readStrings(in);
+                        snapshot.removed = removed != null ? new ArrayList<>(List.of(removed)) : null;
+                    }
+                    case "phase" -> snapshot.phase = readEnum(in, GameState.GamePhase.class);
+                    case "completedTasks" -> snapshot.completedTasks = readList(in, TASK_ADAPTER);
+                    case "votes" -> snapshot.votes = readList(in, VOTE_ADAPTER);
+                    case "sabotage" -> snapshot.sabotage = SABOTAGE_ADAPTER.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            if (snapshot.updates == null) {
+                snapshot.updates = new ArrayList<>();
+            }
+            return snapshot;
+        }
+    }
+
+    private static class ChatMessageAdapter extends TypeAdapter<ChatMessage> {
+        @Override
+        public void write(JsonWriter out, ChatMessage chat) throws IOException {
+            out.beginObject();
+            out.name("senderId").value(chat.senderId);
+            out.name("message").value(chat.message);
+            out.name("type").value(chat.type != null ? chat.type.name() : null);
+            out.name("timestamp").value(chat.timestamp);
+            out.endObject();
+        }
+
+        @Override
+        public ChatMessage read(JsonReader in) throws IOException {
+            ChatMessage chat = new ChatMessage(null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "senderId" -> chat.senderId = readString(in);
+                    case "message" -> chat.message = readString(in);
+                    case "type" -> chat.type = readEnum(in, ChatMessage.ChatType.class);
+                    case "timestamp" -> chat.timestamp = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return chat;
+        }
+    }
+
+    private static class EmergencyDataAdapter extends TypeAdapter<EmergencyData> {
+        @Override
+        public void write(JsonWriter out, EmergencyData data) throws IOException {
+            out.beginObject();
+            out.name("reporterId").value(data.reporterId);
+            out.name("type").value(data.type != null ? data.type.name() : null);
+            if (data.location != null) {
+                out.name("location");
+                POINT_ADAPTER.write(out, data.location);
+            }
+            writeOptional(out, "deadBodyId", data.deadBodyId);
+            out.name("timestamp").value(data.timestamp);
+            out.endObject();
+        }
+
+        @Override
+        public EmergencyData read(JsonReader in) throws IOException {
+            EmergencyData data = new EmergencyData(null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "reporterId" -> data.reporterId = readString(in);
+                    case "type" -> data.type = readEnum(in, EmergencyData.EmergencyType.class);
+                    case "location" -> data.location = POINT_ADAPTER.read(in);
+                    case "deadBodyId" -> data.deadBodyId = readString(in);
+                    case "timestamp" -> data.timestamp = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return data;
+        }
+    }
+
+    private static class VoteDataAdapter extends TypeAdapter<VoteData> {
+        @Override
+        public void write(JsonWriter out, VoteData vote) throws IOException {
+            out.beginObject();
+            out.name("voterId").value(vote.voterId);
+            out.name("votedId").value(vote.votedId);
+            out.name("isSkip").value(vote.isSkip);
+            out.name("timestamp").value(vote.timestamp);
+            out.endObject();
+        }
+
+        @Override
+        public VoteData read(JsonReader in) throws IOException {
+            VoteData vote = new VoteData(null, "skip");
+            vote.isSkip = false;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "voterId" -> vote.voterId = readString(in);
+                    case "votedId" -> vote.votedId = readString(in);
+                    case "isSkip" -> vote.isSkip = in.nextBoolean();
+                    case "timestamp" -> vote.timestamp = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return vote;
+        }
+    }
+
+    private static class TaskDataAdapter extends TypeAdapter<TaskData> {
+        @Override
+        public void write(JsonWriter out, TaskData task) throws IOException {
+            out.beginObject();
+            out.name("playerId").value(task.playerId);
+            out.name("taskId").value(task.taskId);
+            out.name("taskType").value(task.taskType != null ? task.taskType.name() : null);
+            out.name("isComplete").value(task.isComplete);
+            out.endObject();
+        }
+
+        @Override
+        public TaskData read(JsonReader in) throws IOException {
+            TaskData task = new TaskData(null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerId" -> task.playerId = readString(in);
+                    case "taskId" -> task.taskId = readString(in);
+                    case "taskType" -> task.taskType = readEnum(in, TaskData.TaskType.class);
+                    case "isComplete" -> task.isComplete = in.nextBoolean();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return task;
+        }
+    }
+
+    private static class KillDataAdapter extends TypeAdapter<KillData> {
+        @Override
+        public void write(JsonWriter out, KillData kill) throws IOException {
+            out.beginObject();
+            out.name("killerId").value(kill.killerId);
+            out.name("victimId").value(kill.victimId);
+            if (kill.location != null) {
+                out.name("location");
+                POINT_ADAPTER.write(out, kill.location);
+            }
+            writeOptional(out, "room", kill.room);
+            out.name("timestamp").value(kill.timestamp);
+            out.endObject();
+        }
+
+        @Override
+        public KillData read(JsonReader in) throws IOException {
+            KillData kill = new KillData(null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "killerId" -> kill.killerId = readString(in);
+                    case "victimId" -> kill.victimId = readString(in);
+                    case "location" -> kill.location = POINT_ADAPTER.read(in);
+                    case "room" -> kill.room = readString(in);
+                    case "timestamp" -> kill.timestamp = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return kill;
+        }
+    }
+
+    private static class SabotageDataAdapter extends TypeAdapter<SabotageData> {
+        private static final TypeAdapter<Map<String, Object>> PARAMETERS_ADAPTER =
+                baseGson.getAdapter(new TypeToken<Map<String, Object>>() {});
+
+        @Override
+        public void write(JsonWriter out, SabotageData sabotage) throws IOException {
+            out.beginObject();
+            out.name("type").value(sabotage.type != null ? sabotage.type.name() : null);
+            if (sabotage.parameters != null) {
+                out.name("parameters");
+                PARAMETERS_ADAPTER.write(out, sabotage.parameters);
+            }
+            out.name("duration").value(sabotage.duration);
+            out.name("isFixed").value(sabotage.isFixed);
+            out.endObject();
+        }
+
+        @Override
+        public SabotageData read(JsonReader in) throws IOException {
+            SabotageData sabotage = new SabotageData(null, 0);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type" -> sabotage.type = readEnum(in, SabotageData.SabotageType.class);
+                    case "parameters" -> sabotage.parameters = PARAMETERS_ADAPTER.read(in);
+                    case "duration" -> sabotage.duration = in.nextLong();
+                    case "isFixed" -> sabotage.isFixed = in.nextBoolean();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return sabotage;
+        }
+    }
+
+    // Small helpers shared by the adapters above
+
+    private static void writeOptional(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeStrings(JsonWriter out, String name, String[] values) throws IOException {
+        if (values == null) return;
+        out.name(name).beginArray();
+        for (String value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException {
+        out.beginArray();
+        for (T value : values) {
+            adapter.write(out, value);
+        }
+        out.endArray();
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(adapter.read(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static String[] readStrings(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values.toArray(new String[0]);
+    }
+
+    private static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> enumClass) throws IOException {
+        String name = readString(in);
+        if (name == null) return null;
+        try {
+            return Enum.valueOf(enumClass, name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Unknown " + enumClass.getSimpleName() + ": " + name);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package event;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.util.UUID;
 
 public class Player {
@@ -27,10 +28,25 @@ public class Player {
     private long lastAnimationUpdate;
     private Direction facing;
 
+    // Rendering caches, rebuilt if a deserialized player has no or other ones
+    private transient PlayerSprites sprites;
+    private transient Color spritesColor;
+    private transient BufferedImage nameTag;
+    private transient String nameTagName;
+
     // Constants
     private static final double DEFAULT_SPEED = 3.0;
-    private static final int PLAYER_WIDTH = 40;
-    private static final int PLAYER_HEIGHT = 50;
+    public static final double VISION_RADIUS = 200.0;
+    public static final double LIGHTS_OUT_VISION_RADIUS = 100.0;
+    public static final double INTERACTION_RANGE = 50.0; // kills, reports, tasks
+
+    // Movement input bits, one byte per frame in PLAYER_INPUT
+    public static final int INPUT_UP = 1;
+    public static final int INPUT_DOWN = 2;
+    public static final int INPUT_LEFT = 4;
+    public static final int INPUT_RIGHT = 8;
+    static final int PLAYER_WIDTH = 40;
+    static final int PLAYER_HEIGHT = 50;
     private static final Color[] PLAYER_COLORS = {
             new Color(197, 17, 17),    // Red
             new Color(19, 46, 209),    // Blue
@@ -48,6 +64,12 @@ public class Player {
         LEFT, RIGHT
     }
 
+    // A remote player, known by the id its client connected with
+    public Player(String id, String name, boolean isImpostor) {
+        this(name, isImpostor);
+        this.id = id;
+    }
+
     public Player(String name, boolean isImpostor) {
         this.id = UUID.randomUUID().toString();
         this.name = name;
@@ -68,149 +90,69 @@ public class Player {
     }
 
     public void update() {
-        // Update position based on movement
-        if (movingUp) y -= speed;
-        if (movingDown) y += speed;
-        if (movingLeft) {
+        applyInput(getInputButtons());
+        updateAnimation();
+    }
+
+    // One frame of movement. The server integrates PLAYER_INPUT with this same
+    // step and the client replays unacknowledged inputs through it, so both
+    // arrive at exactly the same position for the same inputs.
+    public void applyInput(int buttons) {
+        if ((buttons & INPUT_UP) != 0) y -= speed;
+        if ((buttons & INPUT_DOWN) != 0) y += speed;
+        if ((buttons & INPUT_LEFT) != 0) {
             x -= speed;
             facing = Direction.LEFT;
         }
-        if (movingRight) {
+        if ((buttons & INPUT_RIGHT) != 0) {
             x += speed;
             facing = Direction.RIGHT;
         }
+    }
+
+    public int getInputButtons() {
+        return (movingUp ? INPUT_UP : 0)
+                | (movingDown ? INPUT_DOWN : 0)
+                | (movingLeft ? INPUT_LEFT : 0)
+                | (movingRight ? INPUT_RIGHT : 0);
+    }
 
-        // Update animation
+    public void updateAnimation() {
         if (isMoving() && System.currentTimeMillis() - lastAnimationUpdate > animationDelay) {
             animationFrame = (animationFrame + 1) % 4;
             lastAnimationUpdate = System.currentTimeMillis();
         }
     }
 
+    // One cell of the color's sprite atlas plus the cached name tag
     public void draw(Graphics2D g2d) {
-        // Save the original transform
-        AffineTransform originalTransform = g2d.getTransform();
-
-        // Apply facing direction
-        if (facing == Direction.LEFT) {
-            g2d.translate(x + PLAYER_WIDTH, y);
-            g2d.scale(-1, 1);
-        } else {
-            g2d.translate(x, y);
-        }
-
-        // Draw the player body
-        drawBody(g2d);
-
-        if (!isDead) {
-            // Draw the legs
-            drawLegs(g2d);
-
-            // Draw accessories (if any)
-            if (isImpostor) {
-                drawImpostorAccessories(g2d);
-            }
-        } else {
-            // Draw dead body
-            drawDeadBody(g2d);
+        if (sprites == null || !color.equals(spritesColor)) {
+            sprites = PlayerSprites.of(color);
+            spritesColor = color;
         }
+        sprites.draw(g2d, x, y, facing, isMoving(), animationFrame, isImpostor, isDead);
 
         // Draw name tag
         drawNameTag(g2d);
-
-        // Restore the original transform
-        g2d.setTransform(originalTransform);
     }
 
-    private void drawBody(Graphics2D g2d) {
-        // Main body
-        g2d.setColor(color);
-        g2d.fillRoundRect(0, 0, PLAYER_WIDTH, PLAYER_HEIGHT - 10, 10, 10);
-
-        // Backpack
-        g2d.fillRoundRect(-5, 10, 10, 20, 5, 5);
-
-        // Visor
-        g2d.setColor(new Color(155, 188, 215));
-        g2d.fillRoundRect(20, 8, 15, 10, 5, 5);
-    }
-
-    private void drawLegs(Graphics2D g2d) {
-        g2d.setColor(color);
-        if (isMoving()) {
-            // Animated legs
-            switch (animationFrame) {
-                case 0:
-                    g2d.fillRect(5, PLAYER_HEIGHT - 10, 10, 10);
-                    g2d.fillRect(25, PLAYER_HEIGHT - 10, 10, 10);
-                    break;
-                case 1:
-                    g2d.fillRect(10, PLAYER_HEIGHT - 10, 10, 10);
-                    g2d.fillRect(20, PLAYER_HEIGHT - 10, 10, 10);
-                    break;
-                case 2:
-                    g2d.fillRect(15, PLAYER_HEIGHT - 10, 10, 10);
-                    g2d.fillRect(15, PLAYER_HEIGHT - 10, 10, 10);
-                    break;
-                case 3:
-                    g2d.fillRect(20, PLAYER_HEIGHT - 10, 10, 10);
-                    g2d.fillRect(10, PLAYER_HEIGHT - 10, 10, 10);
-                    break;
-            }
-        } else {
-            // Standing still legs
-            g2d.fillRect(10, PLAYER_HEIGHT - 10, 8, 10);
-            g2d.fillRect(22, PLAYER_HEIGHT - 10, 8, 10);
-        }
-    }
-
-    private void drawImpostorAccessories(Graphics2D g2d) {
-        // Draw knife or other impostor-specific accessories
-        g2d.setColor(Color.GRAY);
-        if (facing == Direction.RIGHT) {
-            g2d.fillRect(PLAYER_WIDTH - 5, 20, 12, 3);
-            g2d.fillRect(PLAYER_WIDTH + 2, 18, 3, 7);
-        } else {
-            g2d.fillRect(-7, 20, 12, 3);
-            g2d.fillRect(-5, 18, 3, 7);
-        }
-    }
-
-    private void drawDeadBody(Graphics2D g2d) {
-        // Draw dead body (lying down)
-        g2d.setColor(color);
-        g2d.rotate(Math.PI / 2, PLAYER_WIDTH / 2, PLAYER_HEIGHT / 2);
-        g2d.fillRoundRect(0, 0, PLAYER_WIDTH, PLAYER_HEIGHT - 10, 10, 10);
-
-        // Draw bone
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(15, 25, 10, 3);
-        g2d.fillRect(18, 22, 4, 9);
+    // Whether draw() could touch anything inside view, a world-space rectangle.
+    // The margin covers the name tag above and names wider than the body.
+    public boolean isVisibleIn(Rectangle2D view) {
+        double margin = PLAYER_WIDTH;
+        return view.intersects(x - margin, y - margin, PLAYER_WIDTH + margin * 2, PLAYER_HEIGHT + margin * 2);
     }
 
+    // The tag is rendered once per name and never mirrored with the body
     private void drawNameTag(Graphics2D g2d) {
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.BOLD, 12));
-        FontMetrics fm = g2d.getFontMetrics();
-        int nameWidth = fm.stringWidth(name);
-
-        // Draw name background
-        g2d.fillRoundRect(
-                (PLAYER_WIDTH - nameWidth) / 2 - 2,
-                -20,
-                nameWidth + 4,
-                16,
-                5,
-                5
-        );
-
-        // Draw name text
-        g2d.setColor(Color.BLACK);
-        g2d.drawString(
-                name,
-                (PLAYER_WIDTH - nameWidth) / 2,
-                -7
-        );
+        if (nameTag == null || !name.equals(nameTagName)) {
+            nameTag = PlayerSprites.renderNameTag(name);
+            nameTagName = name;
+        }
+        g2d.drawImage(nameTag,
+                (int) Math.round(x) + PlayerSprites.tagOffsetX(nameTag),
+                (int) Math.round(y) - 20,
+                null);
     }
 
     // Movement setters
@@ -241,7 +183,7 @@ public class Player {
 
     public boolean isNear(Player other) {
         double distance = Point2D.distance(x, y, other.x, other.y);
-        return distance < 50; // Interaction range
+        return distance < INTERACTION_RANGE;
     }
 
     // Getters and setters
@@ -253,6 +195,10 @@ public class Player {
     public double getY() { return y; }
     public Color getColor() { return color; }
 
+    public void setImpostor(boolean isImpostor) {
+        this.isImpostor = isImpostor;
+    }
+
     public void setPosition(double x, double y) {
         this.x = x;
         this.y = y;
@@ -0,0 +1,66 @@
+package event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps player UUID strings to small integers so the binary codec can send a
+// one-byte index instead of a 36-character id. Each lobby has its own table on
+// the server and assigns the indices; an index is only used on the wire once
+// it has been published to every client of that lobby.
+public class PlayerIndexTable {
+    private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> published = new ConcurrentHashMap<>();
+    private final List<String> ids = new ArrayList<>();
+
+    // Server side: returns the existing index or assigns the next one
+    public synchronized int intern(String playerId) {
+        Integer index = indices.get(playerId);
+        if (index != null) {
+            return index;
+        }
+        ids.add(playerId);
+        index = ids.size() - 1;
+        indices.put(playerId, index);
+        return index;
+    }
+
+    // Server side: every client has been told about this index
+    public void publish(String playerId) {
+        if (indices.containsKey(playerId)) {
+            published.put(playerId, true);
+        }
+    }
+
+    // Client side: learned from the server, so it is usable immediately
+    public synchronized void register(String playerId, int index) {
+        while (ids.size() <= index) {
+            ids.add(null);
+        }
+        // After moving to another lobby an index can name someone else now
+        String previous = ids.set(index, playerId);
+        if (previous != null && !previous.equals(playerId)) {
+            indices.remove(previous);
+            published.remove(previous);
+        }
+        indices.put(playerId, index);
+        published.put(playerId, true);
+    }
+
+    // -1 if the id must still be sent as a literal
+    public int publishedIndexOf(String playerId) {
+        if (playerId == null || !published.containsKey(playerId)) {
+            return -1;
+        }
+        return indices.get(playerId);
+    }
+
+    public synchronized String idAt(int index) {
+        return index >= 0 && index < ids.size() ? ids.get(index) : null;
+    }
+
+    public synchronized String[] snapshot() {
+        return ids.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,211 @@
+package event;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Every look a crewmate of one color can have, rasterized once into a single
+// atlas image: four walking frames and standing, with and without the
+// impostor knife, and the body, each facing both ways. Drawing a player is
+// then one drawImage of a cell instead of a dozen vector fills.
+public class PlayerSprites {
+    private static final int PLAYER_WIDTH = Player.PLAYER_WIDTH;
+    private static final int PLAYER_HEIGHT = Player.PLAYER_HEIGHT;
+
+    // Cell extent around the player's x/y: the backpack, the knife and the
+    // rotated body reach up to 10 px beyond the 40x50 body on each side
+    private static final int ORIGIN_X = 10;
+    private static final int ORIGIN_Y = 2;
+    private static final int CELL_WIDTH = PLAYER_WIDTH + ORIGIN_X * 2;
+    private static final int CELL_HEIGHT = PLAYER_HEIGHT + ORIGIN_Y * 2;
+
+    private static final int STANDING = 4; // leg pose after the four walking frames
+    private static final int POSES = 5;
+    private static final int DEAD = POSES * 2; // cell after the alive poses, without and with knife
+    private static final int CELLS_PER_FACING = DEAD + 1;
+
+    private static final Color VISOR_COLOR = new Color(155, 188, 215);
+    private static final Font NAME_FONT = new Font("Arial", Font.BOLD, 12);
+
+    private static final Map<Integer, PlayerSprites> byColor = new ConcurrentHashMap<>();
+    private static FontMetrics nameMetrics;
+
+    private final BufferedImage atlas;
+
+    private PlayerSprites(Color color) {
+        atlas = ImageCache.createCompatible(null, CELL_WIDTH * CELLS_PER_FACING, CELL_HEIGHT * 2,
+                Transparency.TRANSLUCENT);
+        Graphics2D g2d = atlas.createGraphics();
+        try {
+            setQuality(g2d);
+            for (Player.Direction facing : Player.Direction.values()) {
+                for (int pose = 0; pose < POSES; pose++) {
+                    drawCell(g2d, facing, pose, false, color);
+                    drawCell(g2d, facing, POSES + pose, true, color);
+                }
+                drawCell(g2d, facing, DEAD, false, color);
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    // Built on first use; the palette has ten colors, anything else gets its own atlas too
+    public static PlayerSprites of(Color color) {
+        return byColor.computeIfAbsent(color.getRGB(), rgb -> new PlayerSprites(color));
+    }
+
+    // animationFrame is ignored unless moving; facing mirrors the sprite
+    public void draw(Graphics2D g2d, double x, double y, Player.Direction facing,
+                     boolean moving, int animationFrame, boolean impostor, boolean dead) {
+        int cell;
+        if (dead) {
+            cell = DEAD;
+        } else {
+            cell = (impostor ? POSES : 0) + (moving ? animationFrame % 4 : STANDING);
+        }
+
+        int sx = cell * CELL_WIDTH;
+        int sy = facing.ordinal() * CELL_HEIGHT;
+        int dx = (int) Math.round(x) - ORIGIN_X;
+        int dy = (int) Math.round(y) - ORIGIN_Y;
+        g2d.drawImage(atlas, dx, dy, dx + CELL_WIDTH, dy + CELL_HEIGHT,
+                sx, sy, sx + CELL_WIDTH, sy + CELL_HEIGHT, null);
+    }
+
+    // A player's name on its white tag, drawn centered above the body at
+    // tagOffsetX(image), -20 from the player's position
+    public static BufferedImage renderNameTag(String name) {
+        FontMetrics fm = nameMetrics();
+        int nameWidth = fm.stringWidth(name);
+
+        BufferedImage tag = ImageCache.createCompatible(null, nameWidth + 4, 16, Transparency.TRANSLUCENT);
+        Graphics2D g2d = tag.createGraphics();
+        try {
+            setQuality(g2d);
+            g2d.setColor(Color.WHITE);
+            g2d.fillRoundRect(0, 0, nameWidth + 4, 16, 5, 5);
+            g2d.setColor(Color.BLACK);
+            g2d.setFont(NAME_FONT);
+            g2d.drawString(name, 2, 13);
+        } finally {
+            g2d.dispose();
+        }
+        return tag;
+    }
+
+    public static int tagOffsetX(BufferedImage tag) {
+        return (PLAYER_WIDTH - tag.getWidth()) / 2;
+    }
+
+    private static FontMetrics nameMetrics() {
+        if (nameMetrics == null) {
+            Graphics2D g2d = ImageCache.createCompatible(null, 1, 1, Transparency.TRANSLUCENT).createGraphics();
+            setQuality(g2d);
+            nameMetrics = g2d.getFontMetrics(NAME_FONT);
+            g2d.dispose();
+        }
+        return nameMetrics;
+    }
+
+    private static void setQuality(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    }
+
+    // Rasterizes one cell with the same drawing, in the same coordinates, the
+    // player used to do every frame
+    private static void drawCell(Graphics2D g2d, Player.Direction facing, int cell, boolean impostor, Color color) {
+        AffineTransform originalTransform = g2d.getTransform();
+        g2d.translate(cell * CELL_WIDTH + ORIGIN_X, facing.ordinal() * CELL_HEIGHT + ORIGIN_Y);
+
+        // Apply facing direction
+        if (facing == Player.Direction.LEFT) {
+            g2d.translate(PLAYER_WIDTH, 0);
+            g2d.scale(-1, 1);
+        }
+
+        // Draw the player body
+        drawBody(g2d, color);
+
+        if (cell != DEAD) {
+            // Draw the legs
+            drawLegs(g2d, color, cell % POSES);
+
+            // Draw accessories (if any)
+            if (impostor) {
+                drawImpostorAccessories(g2d, facing);
+            }
+        } else {
+            // Draw dead body
+            drawDeadBody(g2d, color);
+        }
+
+        g2d.setTransform(originalTransform);
+    }
+
+    private static void drawBody(Graphics2D g2d, Color color) {
+        // Main body
+        g2d.setColor(color);
+        g2d.fillRoundRect(0, 0, PLAYER_WIDTH, PLAYER_HEIGHT - 10, 10, 10);
+
+        // Backpack
+        g2d.fillRoundRect(-5, 10, 10, 20, 5, 5);
+
+        // Visor
+        g2d.setColor(VISOR_COLOR);
+        g2d.fillRoundRect(20, 8, 15, 10, 5, 5);
+    }
+
+    private static void drawLegs(Graphics2D g2d, Color color, int pose) {
+        g2d.setColor(color);
+        switch (pose) {
+            case 0:
+                g2d.fillRect(5, PLAYER_HEIGHT - 10, 10, 10);
+                g2d.fillRect(25, PLAYER_HEIGHT - 10, 10, 10);
+                break;
+            case 1:
+                g2d.fillRect(10, PLAYER_HEIGHT - 10, 10, 10);
+                g2d.fillRect(20, PLAYER_HEIGHT - 10, 10, 10);
+                break;
+            case 2:
+                g2d.fillRect(15, PLAYER_HEIGHT - 10, 10, 10);
+                g2d.fillRect(15, PLAYER_HEIGHT - 10, 10, 10);
+                break;
+            case 3:
+                g2d.fillRect(20, PLAYER_HEIGHT - 10, 10, 10);
+                g2d.fillRect(10, PLAYER_HEIGHT - 10, 10, 10);
+                break;
+            default:
+                // Standing still legs
+                g2d.fillRect(10, PLAYER_HEIGHT - 10, 8, 10);
+                g2d.fillRect(22, PLAYER_HEIGHT - 10, 8, 10);
+        }
+    }
+
+    private static void drawImpostorAccessories(Graphics2D g2d, Player.Direction facing) {
+        // Draw knife or other impostor-specific accessories
+        g2d.setColor(Color.GRAY);
+        if (facing == Player.Direction.RIGHT) {
+            g2d.fillRect(PLAYER_WIDTH - 5, 20, 12, 3);
+            g2d.fillRect(PLAYER_WIDTH + 2, 18, 3, 7);
+        } else {
+            g2d.fillRect(-7, 20, 12, 3);
+            g2d.fillRect(-5, 18, 3, 7);
+        }
+    }
+
+    private static void drawDeadBody(Graphics2D g2d, Color color) {
+        // Draw dead body (lying down)
+        g2d.setColor(color);
+        g2d.rotate(Math.PI / 2, PLAYER_WIDTH / 2, PLAYER_HEIGHT / 2);
+        g2d.fillRoundRect(0, 0, PLAYER_WIDTH, PLAYER_HEIGHT - 10, 10, 10);
+
+        // Draw bone
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(15, 25, 10, 3);
+        g2d.fillRect(18, 22, 4, 9);
+    }
+}
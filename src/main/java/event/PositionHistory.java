@@ -0,0 +1,74 @@
+package event;
+
+import java.awt.geom.Point2D;
+
+// Where one player was over the last second or two, as the server saw it. The
+// lobby records every player once per tick, so this is a fixed ring of
+// primitives: recording overwrites the oldest entry and never allocates.
+// Used to rewind a victim to the moment the killer was looking at.
+public class PositionHistory {
+    private final long[] times;
+    private final double[] xs;
+    private final double[] ys;
+    private int newest = -1;
+    private int count;
+
+    public PositionHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.times = new long[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+    }
+
+    // Times must not go backwards; a repeated time replaces the last entry
+    public void record(long time, double x, double y) {
+        if (count == 0 || time > times[newest]) {
+            newest = (newest + 1) % times.length;
+            count = Math.min(count + 1, times.length);
+        }
+        times[newest] = time;
+        xs[newest] = x;
+        ys[newest] = y;
+    }
+
+    // Position at the given time, interpolated between the entries around it.
+    // Times before the oldest entry get the oldest, after the newest the
+    // newest. Returns false if nothing has been recorded.
+    public boolean positionAt(long time, Point2D.Double out) {
+        if (count == 0) return false;
+
+        int later = newest;
+        if (time >= times[later]) {
+            out.x = xs[later];
+            out.y = ys[later];
+            return true;
+        }
+
+        for (int i = 1; i < count; i++) {
+            int earlier = (newest - i + times.length) % times.length;
+            if (times[earlier] <= time) {
+                double t = (double) (time - times[earlier]) / (times[later] - times[earlier]);
+                out.x = xs[earlier] + (xs[later] - xs[earlier]) * t;
+                out.y = ys[earlier] + (ys[later] - ys[earlier]) * t;
+                return true;
+            }
+            later = earlier;
+        }
+
+        out.x = xs[later];
+        out.y = ys[later];
+        return true;
+    }
+
+    // How far back positionAt can answer exactly
+    public long getOldestTime() {
+        return count == 0 ? Long.MAX_VALUE : times[(newest - count + 1 + times.length) % times.length];
+    }
+
+    public void clear() {
+        count = 0;
+        newest = -1;
+    }
+}
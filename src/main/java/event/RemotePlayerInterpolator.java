@@ -0,0 +1,110 @@
+package event;
+
+import java.awt.geom.Point2D;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Smooths remote players by rendering them a fixed delay in the past, between
+// two positions the server already sent. With a delay of at least two send
+// intervals there is nearly always a later position to interpolate towards, so
+// the server can send 10-20 updates a second without visible stepping.
+//
+// Positions are stamped with the server's send time rather than the local
+// receive time, so network jitter does not distort the spacing between them.
+// The server clock is mapped onto ours by the smallest offset seen so far.
+public class RemotePlayerInterpolator {
+    public static final long DEFAULT_DELAY_MILLIS = 100;
+    // Past the newest position, keep moving along the last velocity for at
+    // most this long before holding still
+    private static final long MAX_EXTRAPOLATION_MILLIS = 100;
+    // How fast the clock offset may creep back up after a low outlier,
+    // per update, so drift between the two clocks is followed
+    private static final double OFFSET_RELAX = 0.001;
+    // Bounds for the delay chosen from measured jitter
+    private static final long MAX_ADAPTIVE_DELAY_MILLIS = 250;
+    private static final double JITTER_MARGIN = 2.0;
+
+    private final Map<String, InterpolationBuffer> buffers = new HashMap<>();
+    private final Point2D.Double scratch = new Point2D.Double();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long delayMillis = DEFAULT_DELAY_MILLIS;
+    private double clockOffset = Double.NaN; // local time minus server time
+
+    // Network thread: one authoritative position, stamped with the server time
+    public void onPositionUpdate(String playerId, long serverTime, double x, double y, boolean isMoving) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            double sample = now - serverTime;
+            if (Double.isNaN(clockOffset) || sample < clockOffset) {
+                clockOffset = sample;
+            } else {
+                clockOffset += (sample - clockOffset) * OFFSET_RELAX;
+            }
+            buffers.computeIfAbsent(playerId, id -> new InterpolationBuffer()).add(serverTime, x, y, isMoving);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Render thread: moves every remote player to where it was delayMillis ago
+    public void applyTo(List<Player> players, Player localPlayer) {
+        lock.lock();
+        try {
+            if (Double.isNaN(clockOffset)) return;
+
+            long renderTime = System.currentTimeMillis() - (long) clockOffset - delayMillis;
+            for (Player player : players) {
+                if (player == localPlayer) continue;
+
+                InterpolationBuffer buffer = buffers.get(player.getId());
+                if (buffer != null && buffer.sample(renderTime, MAX_EXTRAPOLATION_MILLIS, scratch)) {
+                    player.setPosition(scratch.x, scratch.y);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void remove(String playerId) {
+        lock.lock();
+        try {
+            buffers.remove(playerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Should cover at least two server send intervals plus jitter
+    public void setDelayMillis(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis must not be negative");
+        }
+        this.delayMillis = delayMillis;
+    }
+
+    // Keeps the delay at the default plus a margin for the measured jitter, so
+    // a jittery link still has a later position to interpolate towards. The
+    // round-trip time itself does not matter: positions carry server time.
+    public void adaptToLatency(RttEstimator rtt) {
+        if (!rtt.hasSamples()) return;
+
+        setDelayMillis(delayFor(rtt));
+    }
+
+    // The delay adaptToLatency picks for a link; the server works out a
+    // client's delay from its own estimate of the same link
+    public static long delayFor(RttEstimator rtt) {
+        if (!rtt.hasSamples()) return DEFAULT_DELAY_MILLIS;
+
+        long delay = DEFAULT_DELAY_MILLIS + Math.round(JITTER_MARGIN * rtt.getJitterMillis());
+        return Math.min(delay, MAX_ADAPTIVE_DELAY_MILLIS);
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+}
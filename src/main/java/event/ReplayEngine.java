@@ -0,0 +1,376 @@
+package event;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Re-runs a recorded game from its event journal against a fresh GameState,
+// through the same mutators the lobby used, with the GameState clock set to
+// the recorded time of each event. The result only depends on the journal, so
+// a desync can be reproduced offline and the state engine benchmarked.
+//
+// Every KEYFRAME_INTERVAL events a keyframe keeps the state at that point as
+// the shortest list of events that rebuilds it. Seeking binary-searches the
+// event times, restarts from the keyframe before the target and replays at
+// most KEYFRAME_INTERVAL events.
+public class ReplayEngine {
+    static final int KEYFRAME_INTERVAL = 256;
+
+    private final List<EventJournal.Entry> events = new ArrayList<>();
+    private final long[] times;
+    private final List<List<EventJournal.Entry>> keyframes = new ArrayList<>(); // keyframe k is at event k * KEYFRAME_INTERVAL
+    private GameState state;
+    private int position;     // events applied
+    private long currentTime; // replay clock, at or after the last applied event
+
+    // Metrics
+    private long appliedCount;
+    private long seekCount;
+
+    public ReplayEngine(List<EventJournal.Entry> entries) {
+        for (EventJournal.Entry entry : entries) {
+            if (entry.kind() != EventJournal.LOBBY && entry.kind() != EventJournal.CLOSED) {
+                events.add(entry);
+            }
+        }
+        times = new long[events.size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = events.get(i).time();
+        }
+        buildKeyframes();
+        restart(0);
+    }
+
+    private void buildKeyframes() {
+        Compactor compactor = new Compactor();
+        for (int i = 0; i < events.size(); i++) {
+            if (i % KEYFRAME_INTERVAL == 0) {
+                keyframes.add(compactor.snapshot());
+            }
+            compactor.add(events.get(i));
+        }
+        if (keyframes.isEmpty()) {
+            keyframes.add(List.of());
+        }
+    }
+
+    private void restart(int keyframe) {
+        state = new GameState();
+        state.setClock(() -> currentTime);
+        for (EventJournal.Entry entry : keyframes.get(keyframe)) {
+            currentTime = entry.time();
+            apply(entry, state, state.getPlayers());
+        }
+        position = keyframe * KEYFRAME_INTERVAL;
+        currentTime = position > 0 ? times[position - 1] : getStartTime();
+    }
+
+    // Applies the next recorded event; false at the end of the recording
+    public boolean step() {
+        if (position >= events.size()) return false;
+
+        EventJournal.Entry entry = events.get(position++);
+        currentTime = entry.time();
+        apply(entry, state, state.getPlayers());
+        appliedCount++;
+        return true;
+    }
+
+    // Headless, as fast as the state engine goes
+    public void runToEnd() {
+        while (step()) {
+        }
+    }
+
+    // State as it was at the given time: every event recorded at or before it applied
+    public void seek(long time) {
+        seekToEvent(eventsUpTo(time));
+        currentTime = Math.max(currentTime, Math.min(time, getEndTime()));
+    }
+
+    public void seekToEvent(int target) {
+        target = Math.max(0, Math.min(target, events.size()));
+        seekCount++;
+        if (target < position || target - position > KEYFRAME_INTERVAL) {
+            restart(target / KEYFRAME_INTERVAL);
+        }
+        while (position < target) {
+            step();
+        }
+    }
+
+    // Playback: moves forward to the given time, never back
+    public void advanceTo(long time) {
+        while (position < events.size() && times[position] <= time) {
+            step();
+        }
+        currentTime = Math.max(currentTime, Math.min(time, getEndTime()));
+    }
+
+    // Number of events recorded at or before the given time
+    private int eventsUpTo(long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Applies one recorded event through the GameState mutators; players is the
+    // roster the event's ids refer to. Shared with lobby recovery. False for
+    // kinds that do not change game state.
+    static boolean apply(EventJournal.Entry entry, GameState state, Map<String, Player> players) {
+        Player actor = entry.actor() != null ? players.get(entry.actor()) : null;
+        switch (entry.kind()) {
+            case EventJournal.JOIN -> players.put(entry.actor(), new Player(entry.target(), false));
+            case EventJournal.LEAVE -> players.remove(entry.actor());
+            case EventJournal.ROLE -> {
+                if (actor != null) actor.setImpostor(entry.value() == 1);
+            }
+            case EventJournal.GAME_START -> state.startGame();
+            case EventJournal.KILL -> {
+                // The body stays where the kill happened
+                Player victim = players.get(entry.target());
+                if (victim != null) {
+                    victim.kill();
+                    victim.setPosition(entry.x(), entry.y());
+                }
+                state.registerKill(new KillData(entry.actor(), entry.target(),
+                        new Point2D.Double(entry.x(), entry.y())));
+            }
+            case EventJournal.VOTE -> state.registerVote(
+                    new VoteData(entry.actor(), entry.target() != null ? entry.target() : "skip"));
+            case EventJournal.TASK_COMPLETE -> state.completeTask(new TaskData(entry.actor(), entry.target(),
+                    TaskData.TaskType.values()[(int) entry.value()]));
+            case EventJournal.SABOTAGE -> state.triggerSabotage(new SabotageData(
+                    SabotageData.SabotageType.values()[(int) entry.value()], (long) entry.x()));
+            case EventJournal.EMERGENCY_MEETING -> {
+                EmergencyData data = new EmergencyData(entry.actor(),
+                        EmergencyData.EmergencyType.values()[(int) entry.value()]);
+                data.deadBodyId = entry.target();
+                state.startEmergencyMeeting(data);
+            }
+            case EventJournal.GAME_END -> state.endGame(GameState.GameEndReason.values()[(int) entry.value()]);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Checksum of everything the journal drives: compare it with the server's
+    // at the same sequence to find where a desync starts
+    public long checksum() {
+        return checksum(state);
+    }
+
+    static long checksum(GameState state) {
+        StringBuilder text = new StringBuilder();
+        text.append(state.getCurrentPhase()).append(state.isGameInProgress());
+        for (Map.Entry<String, Player> entry : new TreeMap<>(state.getPlayers()).entrySet()) {
+            Player player = entry.getValue();
+            text.append('|').append(entry.getKey()).append(player.isImpostor()).append(player.isDead());
+        }
+        if (state.getCurrentVoting() != null && state.getCurrentVoting().votes != null) {
+            text.append(new TreeMap<>(state.getCurrentVoting().votes));
+        }
+        SabotageState sabotage = state.getSabotageState();
+        text.append(sabotage.isActive).append(sabotage.type);
+
+        CRC32 crc = new CRC32();
+        crc.update(text.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    public GameState getState() {
+        return state;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getEventCount() {
+        return events.size();
+    }
+
+    public EventJournal.Entry getEvent(int index) {
+        return events.get(index);
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    public long getStartTime() {
+        return times.length > 0 ? times[0] : 0;
+    }
+
+    public long getEndTime() {
+        return times.length > 0 ? times[times.length - 1] : 0;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public long getSeekCount() {
+        return seekCount;
+    }
+
+    // Keeps, for the events seen so far, only those that still shape the
+    // state: present players and their roles, the latest game's start, kills
+    // and tasks, the latest sabotage, and the last meeting and its votes.
+    // GameState.startGame resets none of these, so the dead stay dead into
+    // the next game and earlier games' entries are kept too.
+    private static class Compactor {
+        private final Map<String, EventJournal.Entry> joins = new LinkedHashMap<>();
+        private final Map<String, EventJournal.Entry> roles = new LinkedHashMap<>();
+        private final List<EventJournal.Entry> progress = new ArrayList<>(); // kills and tasks
+        private final List<EventJournal.Entry> meeting = new ArrayList<>();  // meeting, then its votes
+        private EventJournal.Entry gameStart;
+        private EventJournal.Entry sabotage;
+        private EventJournal.Entry gameEnd;
+
+        void add(EventJournal.Entry entry) {
+            switch (entry.kind()) {
+                case EventJournal.JOIN -> joins.put(entry.actor(), entry);
+                case EventJournal.LEAVE -> {
+                    joins.remove(entry.actor());
+                    roles.remove(entry.actor());
+                }
+                case EventJournal.ROLE -> roles.put(entry.actor(), entry);
+                case EventJournal.GAME_START -> {
+                    gameStart = entry;
+                    gameEnd = null;
+                }
+                case EventJournal.KILL, EventJournal.TASK_COMPLETE -> progress.add(entry);
+                case EventJournal.SABOTAGE -> sabotage = entry;
+                case EventJournal.EMERGENCY_MEETING -> {
+                    meeting.clear();
+                    meeting.add(entry);
+                }
+                case EventJournal.VOTE -> meeting.add(entry);
+                case EventJournal.GAME_END -> gameEnd = entry;
+                default -> {
+                }
+            }
+        }
+
+        // In recorded order, so the phase ends up where the full sequence left it
+        List<EventJournal.Entry> snapshot() {
+            List<EventJournal.Entry> keyframe = new ArrayList<>(joins.values());
+            keyframe.addAll(roles.values());
+            if (gameStart != null) keyframe.add(gameStart);
+            keyframe.addAll(progress);
+            if (sabotage != null) keyframe.add(sabotage);
+            keyframe.addAll(meeting);
+            if (gameEnd != null) keyframe.add(gameEnd);
+            keyframe.sort(Comparator.comparingLong(EventJournal.Entry::sequence));
+            return keyframe;
+        }
+    }
+
+    // Headless: replays each journal at full speed, times seeks, and checks
+    // that seeking lands on the same state as replaying from the start.
+    // With --view the first journal opens in a window with a scrubbable timeline.
+    public static void main(String[] args) throws IOException {
+        boolean view = Arrays.asList(args).contains("--view");
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) files.add(arg);
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: ReplayEngine [--view] <journal>...");
+            return;
+        }
+
+        if (view) {
+            ReplayEngine replay = new ReplayEngine(EventJournal.readAll(Path.of(files.get(0))));
+            SwingUtilities.invokeLater(() -> openViewer(replay));
+            return;
+        }
+
+        for (String file : files) {
+            benchmark(file, new ReplayEngine(EventJournal.readAll(Path.of(file))));
+        }
+    }
+
+    private static void benchmark(String file, ReplayEngine replay) {
+        int rounds = Math.max(1, 1_000_000 / Math.max(1, replay.getEventCount()));
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            replay.seekToEvent(0);
+            replay.runToEnd();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long finalChecksum = replay.checksum();
+
+        // Seeks against a linear replay to the same event
+        Random random = new Random(42);
+        int seeks = 1000;
+        int mismatches = 0;
+        long seekNanos = 0;
+        for (int i = 0; i < seeks; i++) {
+            int target = random.nextInt(replay.getEventCount() + 1);
+            long seekStart = System.nanoTime();
+            replay.seekToEvent(target);
+            seekNanos += System.nanoTime() - seekStart;
+
+            if (i % 50 == 0 && checksum(replayFromStart(replay.events, target)) != replay.checksum()) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("%s: %d events, %d keyframes%n", file, replay.getEventCount(), replay.keyframes.size());
+        System.out.printf("  full replay  %.0f events/s (%d rounds), final checksum %08x%n",
+                rounds * (double) replay.getEventCount() / seconds, rounds, finalChecksum);
+        System.out.printf("  random seek  %.1f us avg, %d/%d spot checks differ from a linear replay%n",
+                seekNanos / 1e3 / seeks, mismatches, (seeks + 49) / 50);
+    }
+
+    private static GameState replayFromStart(List<EventJournal.Entry> events, int count) {
+        GameState state = new GameState();
+        long[] time = new long[1];
+        state.setClock(() -> time[0]);
+        for (int i = 0; i < count; i++) {
+            time[0] = events.get(i).time();
+            apply(events.get(i), state, state.getPlayers());
+        }
+        return state;
+    }
+
+    private static void openViewer(ReplayEngine replay) {
+        Player spectator = new Player("Replay", false);
+        GamePanel panel = new GamePanel(spectator, List.of());
+        panel.setReplay(replay);
+
+        JFrame frame = new JFrame("Replay");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(panel, BorderLayout.CENTER);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+
+        // Real-time playback from wherever the timeline is; scrubbing seeks
+        long[] last = {System.nanoTime()};
+        new javax.swing.Timer(16, e -> {
+            long now = System.nanoTime();
+            replay.advanceTo(replay.getCurrentTime() + (now - last[0]) / 1_000_000);
+            last[0] = now;
+            panel.repaint();
+        }).start();
+    }
+}
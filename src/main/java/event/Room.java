@@ -11,12 +11,21 @@ public class Room {
     private List<RoomFeature> features;
     private boolean lightsOn;
     private double temperature;
+    private int revision; // bumped whenever the pre-rendered look changes
 
     // Visual properties
     private Color floorColor;
     private Color wallColor;
+    private Color floorAltColor;
     private static final Color DARK_COLOR = new Color(30, 30, 40);
+    private static final Color DARK_ALT_COLOR = darker(DARK_COLOR);
     private static final Color LIGHT_COLOR = new Color(200, 200, 220);
+    private static final int TILE_SIZE = 40;
+
+    // Overlay colors, so animating them allocates nothing per frame
+    private static final Color HEALING_COLOR = new Color(100, 255, 100, 50);
+    private static final Color HEAT_COLOR = new Color(255, 100, 0, 30);
+    private final Random effectRandom = new Random();
 
     public Room(String name, Rectangle2D.Double bounds) {
         this.name = name;
@@ -28,13 +37,25 @@ public class Room {
         // Set default colors
         this.floorColor = new Color(80, 80, 100);
         this.wallColor = new Color(60, 60, 80);
+        this.floorAltColor = darker(floorColor);
+    }
+
+    private static Color darker(Color color) {
+        return new Color(
+                Math.max(0, color.getRed() - 10),
+                Math.max(0, color.getGreen() - 10),
+                Math.max(0, color.getBlue() - 10)
+        );
     }
 
     public void addFeature(Rectangle2D.Double bounds, String type) {
         features.add(new RoomFeature(bounds, type));
+        revision++;
     }
 
-    public void drawFeatures(Graphics2D g2d) {
+    // Everything that only changes with the lights: drawn once into the
+    // map's pre-rendered layer, not every frame
+    public void drawStatic(Graphics2D g2d) {
         // Draw floor pattern
         drawFloorPattern(g2d);
 
@@ -42,25 +63,29 @@ public class Room {
         for (RoomFeature feature : features) {
             feature.draw(g2d, lightsOn);
         }
+    }
+
+    // Animated parts, drawn every frame on top of the pre-rendered layer
+    public void drawOverlays(Graphics2D g2d) {
+        for (RoomFeature feature : features) {
+            feature.drawOverlay(g2d);
+        }
 
         // Draw room effects (steam, electrical sparks, etc.)
         drawRoomEffects(g2d);
     }
 
     private void drawFloorPattern(Graphics2D g2d) {
-        // Create floor pattern
-        double tileSize = 40;
         Color baseColor = lightsOn ? floorColor : DARK_COLOR;
-        Color altColor = new Color(
-                Math.max(0, baseColor.getRed() - 10),
-                Math.max(0, baseColor.getGreen() - 10),
-                Math.max(0, baseColor.getBlue() - 10)
-        );
-
-        for (double x = bounds.x; x < bounds.x + bounds.width; x += tileSize) {
-            for (double y = bounds.y; y < bounds.y + bounds.height; y += tileSize) {
-                g2d.setColor(((int)(x/tileSize) + (int)(y/tileSize)) % 2 == 0 ? baseColor : altColor);
-                g2d.fill(new Rectangle2D.Double(x, y, tileSize, tileSize));
+        Color altColor = lightsOn ? floorAltColor : DARK_ALT_COLOR;
+
+        // Room bounds lie on whole pixels, so integer fills cover the same tiles
+        int left = (int) bounds.x;
+        int top = (int) bounds.y;
+        for (int x = left; x < bounds.x + bounds.width; x += TILE_SIZE) {
+            for (int y = top; y < bounds.y + bounds.height; y += TILE_SIZE) {
+                g2d.setColor((x / TILE_SIZE + y / TILE_SIZE) % 2 == 0 ? baseColor : altColor);
+                g2d.fillRect(x, y, TILE_SIZE, TILE_SIZE);
             }
         }
     }
@@ -78,7 +103,7 @@ public class Room {
 
     private void drawElectricalSparks(Graphics2D g2d) {
         // Draw random electrical sparks
-        Random rand = new Random();
+        Random rand = effectRandom;
         if (rand.nextInt(100) < 20) { // 20% chance to show spark
             g2d.setColor(Color.YELLOW);
             double sparkX = bounds.x + rand.nextDouble() * bounds.width;
@@ -94,8 +119,8 @@ public class Room {
 
     private void drawMedicalEffects(Graphics2D g2d) {
         // Draw subtle healing particles
-        Random rand = new Random();
-        g2d.setColor(new Color(100, 255, 100, 50));
+        Random rand = effectRandom;
+        g2d.setColor(HEALING_COLOR);
 
         for (int i = 0; i < 5; i++) {
             double x = bounds.x + rand.nextDouble() * bounds.width;
@@ -108,8 +133,8 @@ public class Room {
 
     private void drawEngineEffects(Graphics2D g2d) {
         // Draw engine heat waves
-        Random rand = new Random();
-        g2d.setColor(new Color(255, 100, 0, 30));
+        Random rand = effectRandom;
+        g2d.setColor(HEAT_COLOR);
 
         double centerX = bounds.getCenterX();
         double centerY = bounds.getCenterY();
@@ -129,6 +154,16 @@ public class Room {
 
     public void toggleLights() {
         lightsOn = !lightsOn;
+        revision++;
+    }
+
+    public boolean isLightsOn() {
+        return lightsOn;
+    }
+
+    // Changes whenever drawStatic would draw something different
+    public int getRevision() {
+        return revision;
     }
 
     public void setTemperature(double temp) {
@@ -149,6 +184,8 @@ public class Room {
 
     // Inner class for room features
     private static class RoomFeature {
+        private static final Color SCAN_COLOR = new Color(0, 255, 0, 50);
+
         private Rectangle2D.Double bounds;
         private String type;
 
@@ -165,9 +202,6 @@ public class Room {
                 case "Table":
                     drawTable(g2d);
                     break;
-                case "Scanner":
-                    drawScanner(g2d);
-                    break;
                 case "Wire Panel":
                     drawWirePanel(g2d);
                     break;
@@ -212,15 +246,18 @@ public class Room {
             ));
         }
 
-        private void drawScanner(Graphics2D g2d) {
-            // Draw base
-            g2d.fill(bounds);
+        // Per frame, over the pre-rendered feature
+        public void drawOverlay(Graphics2D g2d) {
+            if (type.equals("Scanner")) {
+                drawScanLine(g2d);
+            }
+        }
 
-            // Draw scanning effect
+        private void drawScanLine(Graphics2D g2d) {
             long time = System.currentTimeMillis();
             double scanHeight = (time % 1000) / 1000.0 * bounds.height;
 
-            g2d.setColor(new Color(0, 255, 0, 50));
+            g2d.setColor(SCAN_COLOR);
             g2d.fill(new Rectangle2D.Double(
                     bounds.x,
                     bounds.y + scanHeight,
@@ -0,0 +1,59 @@
+package event;
+
+// Smoothed round-trip time and jitter for one connection, fed by PING/PONG
+// pairs. Uses the TCP retransmission timer's estimator (RFC 6298): an
+// exponentially weighted mean, and the weighted mean deviation from it as
+// the jitter. Updated by one thread, readable from any.
+public class RttEstimator {
+    private static final double ALPHA = 1.0 / 8; // weight of a new sample in the mean
+    private static final double BETA = 1.0 / 4;  // weight of a new sample in the deviation
+
+    private volatile double smoothedRtt;
+    private volatile double jitter;
+    private volatile double lastRtt;
+    private volatile long samples;
+
+    // A PONG came back carrying the System.nanoTime() its PING was sent at
+    public void onPong(long pingSentNanos) {
+        addSample((System.nanoTime() - pingSentNanos) / 1_000_000.0);
+    }
+
+    public void addSample(double rttMillis) {
+        if (rttMillis < 0) return;
+
+        if (samples == 0) {
+            smoothedRtt = rttMillis;
+            jitter = rttMillis / 2;
+        } else {
+            jitter += BETA * (Math.abs(smoothedRtt - rttMillis) - jitter);
+            smoothedRtt += ALPHA * (rttMillis - smoothedRtt);
+        }
+        lastRtt = rttMillis;
+        samples++;
+    }
+
+    public boolean hasSamples() {
+        return samples > 0;
+    }
+
+    public double getSmoothedRttMillis() {
+        return smoothedRtt;
+    }
+
+    public double getJitterMillis() {
+        return jitter;
+    }
+
+    public double getLastRttMillis() {
+        return lastRtt;
+    }
+
+    public long getSampleCount() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rtt %.1f ms, jitter %.1f ms", smoothedRtt, jitter);
+    }
+}
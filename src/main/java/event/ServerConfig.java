@@ -0,0 +1,210 @@
+package event;
+
+public class ServerConfig {
+    public enum TransportMode {
+        BLOCKING,   // one thread per client, BufferedReader.readLine()
+        NIO         // a few selector event loops shared by all clients
+    }
+
+    // What a client's outbound queue does when the client cannot keep up
+    public enum OverflowPolicy {
+        COALESCE,       // newer PLAYER_UPDATEs/SNAPSHOTs replace queued ones; disconnect if still full
+        DROP_OLDEST,    // discard the oldest queued frame to make room
+        DISCONNECT      // disconnect once full or the oldest frame exceeds the lag threshold
+    }
+
+    private final TransportMode transportMode;
+    private final int ioThreads;
+    private final ExecutorStrategy executorStrategy;
+    private final int maxConnections;
+    private final LobbySettings lobbySettings;
+    private final int lobbyWorkers;
+    private final int maxLobbies;
+    private final OverflowPolicy overflowPolicy;
+    private final int outboundQueueCapacity;
+    private final long maxOutboundLagMillis;
+    private final long flushIntervalMillis;
+    private final boolean tcpNoDelay;
+    private final int datagramPort;
+    private final long sessionGraceMillis;
+    private final String journalDirectory;
+
+    private ServerConfig(Builder builder) {
+        this.transportMode = builder.transportMode;
+        this.ioThreads = builder.ioThreads;
+        this.executorStrategy = builder.executorStrategy;
+        this.maxConnections = builder.maxConnections;
+        this.lobbySettings = builder.lobbySettings;
+        this.lobbyWorkers = builder.lobbyWorkers;
+        this.maxLobbies = builder.maxLobbies;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.outboundQueueCapacity = builder.outboundQueueCapacity;
+        this.maxOutboundLagMillis = builder.maxOutboundLagMillis;
+        this.flushIntervalMillis = builder.flushIntervalMillis;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.datagramPort = builder.datagramPort;
+        this.sessionGraceMillis = builder.sessionGraceMillis;
+        this.journalDirectory = builder.journalDirectory;
+    }
+
+    public static ServerConfig defaults() {
+        return new Builder().build();
+    }
+
+    // Getters
+    public TransportMode getTransportMode() { return transportMode; }
+    public int getIoThreads() { return ioThreads; }
+    public ExecutorStrategy getExecutorStrategy() { return executorStrategy; }
+    public int getMaxConnections() { return maxConnections; }
+    public LobbySettings getLobbySettings() { return lobbySettings; }
+    public int getLobbyWorkers() { return lobbyWorkers; }
+    public int getMaxLobbies() { return maxLobbies; }
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+    public int getOutboundQueueCapacity() { return outboundQueueCapacity; }
+    public long getMaxOutboundLagMillis() { return maxOutboundLagMillis; }
+    public long getFlushIntervalMillis() { return flushIntervalMillis; }
+    public boolean isTcpNoDelay() { return tcpNoDelay; }
+    public int getDatagramPort() { return datagramPort; }
+    public boolean isDatagramEnabled() { return datagramPort >= 0; }
+    public long getSessionGraceMillis() { return sessionGraceMillis; }
+    public String getJournalDirectory() { return journalDirectory; }
+
+    public OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(overflowPolicy, outboundQueueCapacity, maxOutboundLagMillis);
+    }
+
+    public static class Builder {
+        private TransportMode transportMode = TransportMode.BLOCKING;
+        private int ioThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        private ExecutorStrategy executorStrategy = ExecutorStrategy.PLATFORM;
+        private int maxConnections = 1024;
+        private LobbySettings lobbySettings = LobbySettings.defaults();
+        private int lobbyWorkers = Runtime.getRuntime().availableProcessors();
+        private int maxLobbies = 256;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+        private int outboundQueueCapacity = 512;
+        private long maxOutboundLagMillis = 3000;
+        private long flushIntervalMillis = 0;
+        private boolean tcpNoDelay = true;
+        private int datagramPort = -1;
+        private long sessionGraceMillis = 30000;
+        private String journalDirectory;
+
+        public Builder transportMode(TransportMode transportMode) {
+            this.transportMode = transportMode;
+            return this;
+        }
+
+        public Builder ioThreads(int ioThreads) {
+            if (ioThreads < 1) {
+                throw new IllegalArgumentException("ioThreads must be at least 1");
+            }
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder executorStrategy(ExecutorStrategy executorStrategy) {
+            this.executorStrategy = executorStrategy;
+            return this;
+        }
+
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("maxConnections must be at least 1");
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        // Settings every new lobby starts with
+        public Builder lobbySettings(LobbySettings lobbySettings) {
+            this.lobbySettings = lobbySettings;
+            return this;
+        }
+
+        // Threads that all lobby ticks are pinned to
+        public Builder lobbyWorkers(int lobbyWorkers) {
+            if (lobbyWorkers < 1) {
+                throw new IllegalArgumentException("lobbyWorkers must be at least 1");
+            }
+            this.lobbyWorkers = lobbyWorkers;
+            return this;
+        }
+
+        public Builder maxLobbies(int maxLobbies) {
+            if (maxLobbies < 1) {
+                throw new IllegalArgumentException("maxLobbies must be at least 1");
+            }
+            this.maxLobbies = maxLobbies;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder outboundQueueCapacity(int outboundQueueCapacity) {
+            if (outboundQueueCapacity < 1) {
+                throw new IllegalArgumentException("outboundQueueCapacity must be at least 1");
+            }
+            this.outboundQueueCapacity = outboundQueueCapacity;
+            return this;
+        }
+
+        // Only used by OverflowPolicy.DISCONNECT
+        public Builder maxOutboundLagMillis(long maxOutboundLagMillis) {
+            if (maxOutboundLagMillis < 1) {
+                throw new IllegalArgumentException("maxOutboundLagMillis must be positive");
+            }
+            this.maxOutboundLagMillis = maxOutboundLagMillis;
+            return this;
+        }
+
+        // 0 flushes as soon as a client's queue runs dry, i.e. once per dispatch or
+        // tick; larger values hold writes back to batch more frames per flush
+        public Builder flushIntervalMillis(long flushIntervalMillis) {
+            if (flushIntervalMillis < 0) {
+                throw new IllegalArgumentException("flushIntervalMillis must not be negative");
+            }
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        // Writes are already batched, so Nagle's algorithm only adds latency
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        // UDP port for position updates and snapshots: -1 keeps everything on
+        // TCP, 0 picks a free port. Clients learn the port during CONNECT.
+        public Builder datagramPort(int datagramPort) {
+            if (datagramPort < -1 || datagramPort > 65535) {
+                throw new IllegalArgumentException("datagramPort must be -1 or a valid port");
+            }
+            this.datagramPort = datagramPort;
+            return this;
+        }
+
+        // How long a dropped player keeps its slot for a reconnect; 0 removes
+        // it as soon as the connection closes
+        public Builder sessionGraceMillis(long sessionGraceMillis) {
+            if (sessionGraceMillis < 0) {
+                throw new IllegalArgumentException("sessionGraceMillis must not be negative");
+            }
+            this.sessionGraceMillis = sessionGraceMillis;
+            return this;
+        }
+
+        // Where each game's event journal is written; null turns journaling off
+        public Builder journalDirectory(String journalDirectory) {
+            this.journalDirectory = journalDirectory;
+            return this;
+        }
+
+        public ServerConfig build() {
+            return new ServerConfig(this);
+        }
+    }
+}
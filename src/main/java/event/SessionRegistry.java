@@ -0,0 +1,169 @@
+package event;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps a player's place in its lobby across a dropped connection. Every
+// negotiated CONNECT gets a session token; when the connection closes without
+// the player leaving, the player stays in the game for a grace window, and a
+// new connection presenting the token takes over the same slot, with its role,
+// tasks and position untouched, and only catches up on what it missed.
+public class SessionRegistry {
+    private static final int TOKEN_BYTES = 16;
+
+    private final Map<String, Session> sessions = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConnectionManager timers;
+    private final long graceMillis;
+
+    // Counters
+    private long resumedCount;
+    private long expiredCount;
+
+    public SessionRegistry(ConnectionManager timers, long graceMillis) {
+        this.timers = timers;
+        this.graceMillis = graceMillis;
+    }
+
+    public static class Session {
+        private final String token;
+        private final String playerId;
+        private ClientHandler client;       // the connection that owns the slot
+        private ClientHandler previous;     // the one it took over from, if resumed
+        private ScheduledFuture<?> expiry;  // set while no connection owns the slot
+
+        private Session(String token, String playerId, ClientHandler client) {
+            this.token = token;
+            this.playerId = playerId;
+            this.client = client;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getPlayerId() {
+            return playerId;
+        }
+    }
+
+    public Session open(String playerId, ClientHandler client) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        Session session = new Session(HexFormat.of().formatHex(bytes), playerId, client);
+
+        lock.lock();
+        try {
+            sessions.put(session.token, session);
+        } finally {
+            lock.unlock();
+        }
+        return session;
+    }
+
+    // Hands the slot to a new connection. Null if the token is unknown, has
+    // expired, or belongs to a different player.
+    public Session resume(String token, String playerId, ClientHandler client) {
+        lock.lock();
+        try {
+            Session session = sessions.get(token);
+            if (session == null || !session.playerId.equals(playerId)) {
+                return null;
+            }
+            if (session.expiry != null) {
+                session.expiry.cancel(false);
+                session.expiry = null;
+            }
+            session.previous = session.client;
+            session.client = client;
+            resumedCount++;
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The connection the resumed one replaced
+    public ClientHandler previousOf(Session session) {
+        lock.lock();
+        try {
+            return session.previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The connection dropped: keep the slot for the grace window, then run
+    // onExpired unless the session was resumed by then. Does nothing if a
+    // resumed connection already owns the slot.
+    public void hold(Session session, ClientHandler client, Runnable onExpired) {
+        lock.lock();
+        try {
+            if (session.client != client || session.expiry != null) return;
+            session.expiry = timers.schedule(() -> expire(session, client, onExpired), graceMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(Session session, ClientHandler client, Runnable onExpired) {
+        lock.lock();
+        try {
+            if (session.client != client || sessions.get(session.token) != session) return;
+            sessions.remove(session.token);
+            expiredCount++;
+        } finally {
+            lock.unlock();
+        }
+        onExpired.run();
+    }
+
+    // The player left on purpose. False if the connection no longer owns the slot.
+    public boolean close(Session session, ClientHandler client) {
+        lock.lock();
+        try {
+            if (session.client != client || sessions.get(session.token) != session) {
+                return false;
+            }
+            if (session.expiry != null) {
+                session.expiry.cancel(false);
+            }
+            sessions.remove(session.token);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSessionCount() {
+        lock.lock();
+        try {
+            return sessions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getResumedCount() {
+        lock.lock();
+        try {
+            return resumedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getExpiredCount() {
+        lock.lock();
+        try {
+            return expiredCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package event;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -21,6 +22,10 @@ public class TaskProgress implements Serializable {
         return completedCount.get() >= totalTasks;
     }
 
+    public Set<String> getCompletedTaskIds() {
+        return completedTasks.keySet();
+    }
+
     public double getCompletionPercentage() {
         return (double) completedCount.get() / totalTasks * 100;
     }
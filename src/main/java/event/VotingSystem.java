@@ -175,6 +175,22 @@ public class VotingSystem {
     public void castVote(String voterId, String votedId) {
         if (!isVotingTime) return;
 
+        recordVote(voterId, votedId);
+
+        // Notify network
+        if (networkManager != null) {
+            networkManager.sendVote(voterId, votedId);
+        }
+    }
+
+    // Someone else's vote, relayed by the server
+    public void registerVote(VoteData vote) {
+        if (!isVotingTime) return;
+
+        recordVote(vote.voterId, vote.isSkip ? "skip" : vote.votedId);
+    }
+
+    private void recordVote(String voterId, String votedId) {
         votes.put(voterId, votedId);
         updateVotingPanel();
 
@@ -182,11 +198,6 @@ public class VotingSystem {
         if (votes.size() == getAlivePlayers().size()) {
             endVoting();
         }
-
-        // Notify network
-        if (networkManager != null) {
-            networkManager.sendVote(voterId, votedId);
-        }
     }
 
     private void endVoting() {
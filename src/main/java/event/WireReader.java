@@ -0,0 +1,96 @@
+package event;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Counterpart of WireWriter over a ByteBuffer holding one complete payload
+class WireReader {
+    private final ByteBuffer buffer;
+
+    WireReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() throws IOException {
+        try {
+            return buffer.get() & 0xFF;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated payload", e);
+        }
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    int readVarInt() throws IOException {
+        long value = readVarLong();
+        if ((value >>> 32) != 0) {
+            throw new IOException("Varint out of int range");
+        }
+        return (int) value;
+    }
+
+    long readZigZag() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    String readString() throws IOException {
+        int length = readVarInt();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = readBytes(length - 1);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    byte[] readBytes(int length) throws IOException {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Truncated payload");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    // Reads a varint length prefix without consuming anything if it is incomplete.
+    // Returns -1 when more bytes are needed.
+    static int peekVarInt(ByteBuffer buffer, int maxValue) throws IOException {
+        int value = 0;
+        int position = buffer.position();
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= buffer.limit()) {
+                return -1;
+            }
+            int b = buffer.get(position++) & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0 || value > maxValue) {
+                    throw new IOException("Frame too large");
+                }
+                buffer.position(position);
+                return value;
+            }
+        }
+        throw new IOException("Malformed length prefix");
+    }
+}
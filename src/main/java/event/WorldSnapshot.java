@@ -0,0 +1,259 @@
+package event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// An immutable copy of the replicated game state at one server tick. The server
+// keeps a short history of these so it can diff against whichever tick a client
+// last acknowledged; the client keeps the same history to rebuild full state
+// from the deltas it receives.
+public class WorldSnapshot {
+    public static final WorldSnapshot EMPTY = new WorldSnapshot(
+            -1, Map.of(), null, Map.of(), Map.of(), null);
+
+    private final long tick;
+    private final Map<String, PlayerUpdateData> players;
+    private final GameState.GamePhase phase;
+    private final Map<String, Set<String>> completedTasks; // playerId -> taskIds
+    private final Map<String, String> votes;               // voterId -> votedId
+    private final SabotageData sabotage;                   // duration is the time left
+
+    private WorldSnapshot(long tick,
+                          Map<String, PlayerUpdateData> players,
+                          GameState.GamePhase phase,
+                          Map<String, Set<String>> completedTasks,
+                          Map<String, String> votes,
+                          SabotageData sabotage) {
+        this.tick = tick;
+        this.players = players;
+        this.phase = phase;
+        this.completedTasks = completedTasks;
+        this.votes = votes;
+        this.sabotage = sabotage;
+    }
+
+    // Server side: copy what clients need out of the authoritative state
+    public static WorldSnapshot capture(long tick,
+                                        Map<String, Player> players,
+                                        Map<String, PlayerUpdateData> latestUpdates,
+                                        GameState gameState) {
+        Map<String, PlayerUpdateData> playerCopies = new HashMap<>();
+        for (Map.Entry<String, Player> entry : players.entrySet()) {
+            Player player = entry.getValue();
+            PlayerUpdateData copy = new PlayerUpdateData(entry.getKey(), player.getPosition());
+            PlayerUpdateData latest = latestUpdates.get(entry.getKey());
+            if (latest != null) {
+                copy.isMoving = latest.isMoving;
+                copy.isInVent = latest.isInVent;
+                copy.currentRoom = latest.currentRoom;
+                copy.lastInput = latest.lastInput;
+            }
+            copy.isDead = player.isDead();
+            playerCopies.put(entry.getKey(), copy);
+        }
+
+        Map<String, Set<String>> tasks = new HashMap<>();
+        for (Map.Entry<String, TaskProgress> entry : gameState.getTaskProgress().entrySet()) {
+            tasks.put(entry.getKey(), new HashSet<>(entry.getValue().getCompletedTaskIds()));
+        }
+
+        VotingSession voting = gameState.getCurrentVoting();
+        Map<String, String> votes = voting != null && voting.votes != null
+                ? new HashMap<>(voting.votes)
+                : Map.of();
+
+        return new WorldSnapshot(tick, playerCopies, gameState.getCurrentPhase(),
+                tasks, votes, captureSabotage(gameState.getSabotageState()));
+    }
+
+    // Timers are replicated at one-second resolution so a running sabotage
+    // costs one small update per second rather than one per tick
+    private static SabotageData captureSabotage(SabotageState state) {
+        if (state == null || !state.isActive) {
+            return null;
+        }
+        long remaining = state.startTime + state.remainingTime - System.currentTimeMillis();
+        long seconds = Math.max(0, (remaining + 999) / 1000);
+        SabotageData sabotage = new SabotageData(state.type, seconds * 1000);
+        sabotage.parameters = state.parameters;
+        return sabotage;
+    }
+
+    // Everything that differs from base; an empty delta means nothing changed
+    public SnapshotData deltaFrom(WorldSnapshot base) {
+        List<PlayerUpdateData> changed = new ArrayList<>();
+        for (PlayerUpdateData player : players.values()) {
+            if (!samePlayer(player, base.players.get(player.playerId))) {
+                changed.add(player);
+            }
+        }
+
+        SnapshotData delta = new SnapshotData(tick, changed);
+        delta.baseTick = base.tick;
+
+        for (String playerId : base.players.keySet()) {
+            if (!players.containsKey(playerId)) {
+                if (delta.removed == null) delta.removed = new ArrayList<>();
+                delta.removed.add(playerId);
+            }
+        }
+
+        if (phase != base.phase) {
+            delta.phase = phase;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : completedTasks.entrySet()) {
+            Set<String> known = base.completedTasks.getOrDefault(entry.getKey(), Set.of());
+            for (String taskId : entry.getValue()) {
+                if (!known.contains(taskId)) {
+                    TaskData task = new TaskData(entry.getKey(), taskId, null);
+                    task.isComplete = true;
+                    if (delta.completedTasks == null) delta.completedTasks = new ArrayList<>();
+                    delta.completedTasks.add(task);
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> entry : votes.entrySet()) {
+            if (!Objects.equals(entry.getValue(), base.votes.get(entry.getKey()))) {
+                if (delta.votes == null) delta.votes = new ArrayList<>();
+                delta.votes.add(voteOf(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        if (!sameSabotage(sabotage, base.sabotage)) {
+            // A cleared sabotage is sent as a fixed one so the client can stop it
+            if (sabotage != null) {
+                delta.sabotage = sabotage;
+            } else {
+                delta.sabotage = new SabotageData(base.sabotage.type, 0);
+                delta.sabotage.isFixed = true;
+            }
+        }
+        return delta;
+    }
+
+    // Client side: rebuild the snapshot the server diffed against
+    public WorldSnapshot apply(SnapshotData delta) {
+        Map<String, PlayerUpdateData> nextPlayers = new HashMap<>(players);
+        if (delta.removed != null) {
+            for (String playerId : delta.removed) {
+                nextPlayers.remove(playerId);
+            }
+        }
+        for (PlayerUpdateData player : delta.updates) {
+            nextPlayers.put(player.playerId, player);
+        }
+
+        Map<String, Set<String>> nextTasks = completedTasks;
+        if (delta.completedTasks != null) {
+            nextTasks = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : completedTasks.entrySet()) {
+                nextTasks.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+            for (TaskData task : delta.completedTasks) {
+                nextTasks.computeIfAbsent(task.playerId, id -> new HashSet<>()).add(task.taskId);
+            }
+        }
+
+        Map<String, String> nextVotes = votes;
+        if (delta.votes != null) {
+            nextVotes = new HashMap<>(votes);
+            for (VoteData vote : delta.votes) {
+                nextVotes.put(vote.voterId, vote.votedId);
+            }
+        }
+
+        SabotageData nextSabotage = sabotage;
+        if (delta.sabotage != null) {
+            nextSabotage = delta.sabotage.isFixed ? null : delta.sabotage;
+        }
+
+        return new WorldSnapshot(delta.tick, nextPlayers,
+                delta.phase != null ? delta.phase : phase,
+                nextTasks, nextVotes, nextSabotage);
+    }
+
+    // The same tick with only the given players; null keeps everyone
+    public WorldSnapshot visibleOnly(Set<String> playerIds) {
+        if (playerIds == null) return this;
+
+        Map<String, PlayerUpdateData> visible = new HashMap<>();
+        for (String playerId : playerIds) {
+            PlayerUpdateData player = players.get(playerId);
+            if (player != null) {
+                visible.put(playerId, player);
+            }
+        }
+        return new WorldSnapshot(tick, visible, phase, completedTasks, votes, sabotage);
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public Map<String, PlayerUpdateData> getPlayers() {
+        return players;
+    }
+
+    public GameState.GamePhase getPhase() {
+        return phase;
+    }
+
+    public SabotageData getSabotage() {
+        return sabotage;
+    }
+
+    private static VoteData voteOf(String voterId, String votedId) {
+        VoteData vote = new VoteData(voterId, votedId != null ? votedId : "skip");
+        vote.votedId = votedId;
+        return vote;
+    }
+
+    private static boolean samePlayer(PlayerUpdateData a, PlayerUpdateData b) {
+        if (b == null) return false;
+        return Objects.equals(a.position, b.position)
+                && a.isMoving == b.isMoving
+                && a.isInVent == b.isInVent
+                && a.isDead == b.isDead
+                && a.lastInput == b.lastInput
+                && Objects.equals(a.currentRoom, b.currentRoom);
+    }
+
+    private static boolean sameSabotage(SabotageData a, SabotageData b) {
+        if (a == null || b == null) return a == b;
+        return a.type == b.type && a.duration == b.duration;
+    }
+
+    // Fixed-size ring of recent snapshots indexed by tick
+    public static class History {
+        private final WorldSnapshot[] ring;
+
+        public History(int size) {
+            this.ring = new WorldSnapshot[size];
+        }
+
+        public void put(WorldSnapshot snapshot) {
+            ring[(int) (snapshot.tick % ring.length)] = snapshot;
+        }
+
+        // Tick -1 is the empty world every client starts from; null if evicted
+        public WorldSnapshot get(long tick) {
+            if (tick < 0) {
+                return EMPTY;
+            }
+            WorldSnapshot snapshot = ring[(int) (tick % ring.length)];
+            return snapshot != null && snapshot.tick == tick ? snapshot : null;
+        }
+
+        public void clear() {
+            Arrays.fill(ring, null);
+        }
+    }
+}